@@ -0,0 +1,26 @@
+package benchmark;
+
+/**
+ * @author Phoenix TAN
+ * @description One micro-benchmark: an operation run in batches by the BenchmarkRunner.
+ * 		setUp() builds the state before every measured batch and is not timed.
+ * 		run(ops) performs the operation ops times and returns a value that depends on the work,
+ * 		which the runner consumes so the JIT cannot drop it.
+ * */
+public abstract class Benchmark {
+
+	private final String name;
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	protected void setUp() {
+	}
+
+	protected abstract long run(int ops);
+}
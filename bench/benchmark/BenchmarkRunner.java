@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Phoenix TAN
+ * @description Runs the micro-benchmarks of the simulator hot paths and reports
+ * 		operations per second and bytes allocated per operation.
+ * 		Each benchmark is warmed up, then measured over several batches whose size is
+ * 		calibrated to last about MEASURE_MILLIS; the best batch is reported.
+ * 		Usage: java benchmark.BenchmarkRunner [name filter]
+ * */
+public class BenchmarkRunner {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURE_ITERATIONS = 5;
+	private static final long MEASURE_MILLIS = 200;
+	private static final int MAX_OPS = 1 << 28;
+
+	/** results of run() end up here so the work cannot be optimized away */
+	private static volatile long sink;
+
+	private static final com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		String filter = args.length > 0 ? args[0] : "";
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(EventListBenchmarks.all());
+		benchmarks.addAll(ChecksumBenchmarks.all());
+		benchmarks.addAll(PacketBenchmarks.all());
+		benchmarks.addAll(QueueBenchmarks.all());
+		benchmarks.addAll(RandomBenchmarks.all());
+
+		System.out.println(String.format("%-56s %16s %12s", "Benchmark", "ops/s", "B/op"));
+		for ( Benchmark b : benchmarks ) {
+			if ( b.getName().contains(filter) ) {
+				measure(b);
+			}
+		}
+	}
+
+	private static void measure(Benchmark b) {
+		// warm up and find a batch size that runs for about MEASURE_MILLIS
+		int ops = 1;
+		long millis = 0;
+		for ( int i = 0; i < WARMUP_ITERATIONS || (millis < MEASURE_MILLIS / 2 && ops < MAX_OPS); i++ ) {
+			millis = elapsedMillis(b, ops);
+			if ( millis < MEASURE_MILLIS ) {
+				long next = millis == 0 ? ops * 16L : ops * MEASURE_MILLIS / millis + 1;
+				ops = (int) Math.min(MAX_OPS, next);
+			}
+		}
+
+		double bestOpsPerSecond = 0;
+		double bytesPerOp = Double.MAX_VALUE;
+		for ( int i = 0; i < MEASURE_ITERATIONS; i++ ) {
+			b.setUp();
+			long thread = Thread.currentThread().getId();
+			long bytes = threadBean.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			sink ^= b.run(ops);
+			long nanos = System.nanoTime() - start;
+			bytes = threadBean.getThreadAllocatedBytes(thread) - bytes;
+
+			bestOpsPerSecond = Math.max(bestOpsPerSecond, ops / (nanos / 1e9));
+			bytesPerOp = Math.min(bytesPerOp, bytes / (double) ops);
+		}
+
+		System.out.println(String.format("%-56s %16.1f %12.1f", b.getName(), bestOpsPerSecond, bytesPerOp));
+	}
+
+	private static long elapsedMillis(Benchmark b, int ops) {
+		b.setUp();
+		long start = System.nanoTime();
+		sink ^= b.run(ops);
+		return (System.nanoTime() - start) / 1000000;
+	}
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import packet.Checksummer;
+import packet.InternetChecksummer;
+import packet.Packet;
+import packet.PacketArena;
+import packet.TextChecksummer;
+import packet.ZipChecksummer;
+import simulator.NetworkSimulator;
+
+/**
+ * @author Phoenix TAN
+ * @description Benchmarks of the per-packet cost of every Checksummer,
+ * 		for data packets of several payload sizes and for an ACK carrying a SACK list,
+ * 		and for a data packet kept in a PacketArena, which is checksummed in its slot.
+ * */
+public class ChecksumBenchmarks {
+
+	public static List<Benchmark> all() {
+		Checksummer[] checksummers = {
+				new TextChecksummer(),
+				ZipChecksummer.crc32(),
+				ZipChecksummer.crc32c(),
+				ZipChecksummer.adler32(),
+				new InternetChecksummer() };
+
+		Packet view = new PacketArena(-1, 1500).allocate(PacketBenchmarks.dataPacket(1500));
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for ( Checksummer checksummer : checksummers ) {
+			benchmarks.add(checksum(checksummer, "data", PacketBenchmarks.dataPacket()));
+			benchmarks.add(checksum(checksummer, "sack", PacketBenchmarks.sackPacket()));
+			benchmarks.add(checksum(checksummer, "data 1500", PacketBenchmarks.dataPacket(1500)));
+			benchmarks.add(checksum(checksummer, "view 1500", view));
+			benchmarks.add(checksum(checksummer, "data 65536", PacketBenchmarks.dataPacket(NetworkSimulator.MAX_PAYLOAD_SIZE)));
+		}
+		return benchmarks;
+	}
+
+	private static Benchmark checksum(final Checksummer checksummer, String kind, final Packet packet) {
+		return new Benchmark("Checksummer(" + checksummer + ").checksum(" + kind + ")") {
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					sum += checksummer.checksum(packet);
+				}
+				return sum;
+			}
+		};
+	}
+}
@@ -0,0 +1,132 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import event.Event;
+import event.EventList;
+import event.EventListArrays;
+import event.EventListCalendar;
+import event.EventListHeap;
+import event.EventListImpl;
+import simulator.NetworkSimulator;
+
+/**
+ * @author Phoenix TAN
+ * @description Benchmarks of the EventList implementations at several populations.
+ * 		add+removeNext is the hold model: the next event is removed and added back
+ * 		a little later, so the population stays the same during the whole batch.
+ * 		removeTimer adds and removes a timer among the other events,
+ * 		getLastPacketTime looks up the last arrival of entity B.
+ * */
+public class EventListBenchmarks {
+
+	private static final int[] POPULATIONS = { 16, 256, 4096 };
+	private static final String[] EVENT_LISTS = { "EventListImpl", "EventListHeap", "EventListCalendar",
+			"EventListArrays" };
+
+	/** time increments of the hold model, drawn once so the batch does not call Random */
+	private static final double[] INCREMENTS = new double[1024];
+	static {
+		Random random = new Random(1);
+		for ( int i = 0; i < INCREMENTS.length; i++ ) {
+			INCREMENTS[i] = random.nextDouble() * 20;
+		}
+	}
+
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for ( String name : EVENT_LISTS ) {
+			for ( int population : POPULATIONS ) {
+				benchmarks.add(addRemoveNext(name, population));
+				benchmarks.add(removeTimer(name, population));
+				benchmarks.add(getLastPacketTime(name, population));
+			}
+		}
+		return benchmarks;
+	}
+
+	static EventList newEventList(String name) {
+		if ( name.equals("EventListHeap") ) {
+			return new EventListHeap();
+		} else if ( name.equals("EventListCalendar") ) {
+			return new EventListCalendar();
+		} else if ( name.equals("EventListArrays") ) {
+			return new EventListArrays();
+		}
+		return new EventListImpl();
+	}
+
+	/** population events of layer 3 and layer 5 spread over the next 20 * population time units */
+	private static EventList populate(String name, int population) {
+		EventList list = newEventList(name);
+		Random random = new Random(population);
+		for ( int i = 0; i < population; i++ ) {
+			int type = random.nextBoolean() ? NetworkSimulator.FROMLAYER3 : NetworkSimulator.FROMLAYER5;
+			int entity = random.nextBoolean() ? NetworkSimulator.A : NetworkSimulator.B;
+			list.add(new Event(random.nextDouble() * 20 * population, type, entity));
+		}
+		return list;
+	}
+
+	private static Benchmark addRemoveNext(final String name, final int population) {
+		return new Benchmark(name + ".add+removeNext(" + population + ")") {
+			private EventList list;
+
+			protected void setUp() {
+				list = populate(name, population);
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					Event e = list.removeNext();
+					e.setTime(e.getTime() + INCREMENTS[i & (INCREMENTS.length - 1)]);
+					list.add(e);
+					sum += e.getType();
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark removeTimer(final String name, final int population) {
+		return new Benchmark(name + ".removeTimer(" + population + ")") {
+			private EventList list;
+			private Event timer;
+
+			protected void setUp() {
+				list = populate(name, population);
+				timer = new Event(10 * population, NetworkSimulator.TIMERINTERRUPT, NetworkSimulator.A);
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					list.add(timer);
+					sum += list.removeTimer(NetworkSimulator.A).getEntity();
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark getLastPacketTime(final String name, final int population) {
+		return new Benchmark(name + ".getLastPacketTime(" + population + ")") {
+			private EventList list;
+
+			protected void setUp() {
+				list = populate(name, population);
+			}
+
+			protected long run(int ops) {
+				double sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					sum += list.getLastPacketTime(NetworkSimulator.B);
+				}
+				return (long) sum;
+			}
+		};
+	}
+}
@@ -0,0 +1,152 @@
+package benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import packet.DeltaCompressor;
+import packet.FrameCompressor;
+import packet.Packet;
+import packet.PacketArena;
+import packet.PacketCodec;
+import packet.PacketView;
+import packet.SelectiveAck;
+
+/**
+ * @author Phoenix TAN
+ * @description Benchmarks of Packet(Packet), the copy toLayer3() and the receivers make,
+ * 		and of what replaces it in wire mode and with a packet arena,
+ * 		for a data packet and for an ACK carrying a SACK list.
+ * */
+public class PacketBenchmarks {
+
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(copy("Packet.copy(data)", dataPacket()));
+		benchmarks.add(copy("Packet.copy(sack)", sackPacket()));
+		benchmarks.add(encodeDecode("PacketCodec.encode+decode(data)", dataPacket()));
+		benchmarks.add(encodeDecode("PacketCodec.encode+decode(sack)", sackPacket()));
+		benchmarks.add(encodeDecode("PacketCodec.encode+decode(data 1500)", dataPacket(1500)));
+		benchmarks.add(compress("DeltaCompressor(header).compress+decompress(data)", new DeltaCompressor(false), dataPacket()));
+		benchmarks.add(compress("DeltaCompressor(rle).compress+decompress(data)", new DeltaCompressor(true), dataPacket()));
+		benchmarks.add(compress("DeltaCompressor(rle).compress+decompress(data 1500)", new DeltaCompressor(true), dataPacket(1500)));
+		benchmarks.add(share());
+		benchmarks.add(sackContains());
+		return benchmarks;
+	}
+
+	static Packet dataPacket() {
+		return new Packet(7, 0, 0, "aaaaaaaaaaaaaaaaaaaa");
+	}
+
+	/** a data packet with payloadSize bytes of payload */
+	static Packet dataPacket(int payloadSize) {
+		byte[] payload = new byte[payloadSize];
+		Arrays.fill(payload, (byte) 'a');
+		return new Packet(7, 0, 0, payload);
+	}
+
+	static Packet sackPacket() {
+		Packet packet = new Packet(0, 7, 0);
+		packet.setFlag(true);
+		packet.setsACK(new SelectiveAck(7, 16));
+		for ( int i = 8; i < 13; i++ ) {
+			packet.getsACK().add(i);
+		}
+		return packet;
+	}
+
+	private static Benchmark encodeDecode(String name, final Packet packet) {
+		return new Benchmark(name) {
+			private ByteBuffer frame = ByteBuffer.allocate(PacketCodec.encodedSize(packet));
+			private Packet decoded = new Packet(0, 0, 0);
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					frame.clear();
+					PacketCodec.encode(packet, frame);
+					frame.flip();
+					PacketCodec.decode(frame, decoded);
+					sum += decoded.getSeqnum();
+				}
+				return sum;
+			}
+		};
+	}
+
+	/** compress and decompress the frame of packet, with a new seqnum, checksum and send time each time */
+	private static Benchmark compress(String name, final FrameCompressor compressor, final Packet packet) {
+		return new Benchmark(name) {
+			private ByteBuffer frame = ByteBuffer.allocate(PacketCodec.encodedSize(packet));
+			private ByteBuffer compressed = ByteBuffer.allocate(compressor.maxCompressedSize(frame.capacity()));
+			private ByteBuffer decompressed = ByteBuffer.allocate(frame.capacity());
+
+			protected void setUp() {
+				frame.clear();
+				PacketCodec.encode(packet, frame);
+				frame.flip();
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					PacketCodec.setSeqnum(frame, 0, i);
+					PacketCodec.setChecksum(frame, 0, i * 0x9E3779B9L);
+					PacketCodec.setSendTime(frame, 0, i);
+					frame.rewind();
+					compressed.clear();
+					compressor.compress(frame, compressed);
+					compressed.flip();
+					decompressed.clear();
+					compressor.decompress(compressed, decompressed);
+					sum += compressed.limit() + decompressed.getInt(0);
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark share() {
+		return new Benchmark("PacketView.share+release") {
+			private PacketView view = new PacketArena().allocate(dataPacket());
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					PacketView copy = view.share();
+					sum += copy.getSeqnum();
+					copy.release();
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark sackContains() {
+		return new Benchmark("SelectiveAck.contains") {
+			private SelectiveAck sack = sackPacket().getsACK();
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					sum += sack.contains(i & 15) ? 1 : 0;
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark copy(String name, final Packet packet) {
+		return new Benchmark(name) {
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					sum += new Packet(packet).getSeqnum();
+				}
+				return sum;
+			}
+		};
+	}
+}
@@ -0,0 +1,161 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import packet.Packet;
+import packet.PacketSpillFile;
+import util.GoBackNReceiverQueue;
+import util.GoBackNSenderQueue;
+import util.SelectiveRepeatReceiverQueue;
+import util.SelectiveRepeatSenderQueue;
+
+/**
+ * @author Phoenix TAN
+ * @description Benchmarks of add and slide of the sliding window queues in util.
+ * 		Every sender operation adds one packet behind a backlog of the given size
+ * 		and slides the window by one, so the backlog stays the same; with a spill,
+ * 		the backlog beyond SPILL_HORIZON packets goes through a PacketSpillFile.
+ * 		Every receiver operation buffers a packet at the far end of a window of the given size
+ * 		and slides the window by one, delivering the packet buffered there a window ago.
+ * */
+public class QueueBenchmarks {
+
+	private static final int[] BACKLOGS = { 8, 1024, 65536 };
+	private static final int WINDOW_SIZE = 8;
+	private static final int SPILL_HORIZON = 64;
+	private static final int[] WINDOW_SIZES = { 8, 1024, 65536 };
+
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for ( int backlog : BACKLOGS ) {
+			benchmarks.add(goBackNSender(backlog));
+			benchmarks.add(selectiveRepeatSender(backlog));
+		}
+		benchmarks.add(spilledSelectiveRepeatSender(BACKLOGS[BACKLOGS.length - 1]));
+		for ( int windowSize : WINDOW_SIZES ) {
+			benchmarks.add(goBackNReceiver(windowSize));
+			benchmarks.add(selectiveRepeatReceiver(windowSize));
+		}
+		return benchmarks;
+	}
+
+	private static Benchmark goBackNSender(final int backlog) {
+		return new Benchmark("GoBackNSenderQueue.add+slide(" + backlog + ")") {
+			private GoBackNSenderQueue<Packet> queue;
+			private Packet packet = PacketBenchmarks.dataPacket();
+
+			protected void setUp() {
+				queue = new GoBackNSenderQueue<Packet>(WINDOW_SIZE);
+				for ( int i = 0; i < backlog; i++ ) {
+					queue.add(packet);
+				}
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					queue.add(packet);
+					queue.slide(i, i);
+					sum += queue.getTailIndex();
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark selectiveRepeatSender(final int backlog) {
+		return new Benchmark("SelectiveRepeatSenderQueue.add+slide(" + backlog + ")") {
+			private SelectiveRepeatSenderQueue<Packet> queue;
+			private Packet packet = PacketBenchmarks.dataPacket();
+
+			protected void setUp() {
+				queue = new SelectiveRepeatSenderQueue<Packet>(WINDOW_SIZE);
+				for ( int i = 0; i < backlog; i++ ) {
+					queue.add(packet);
+				}
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					queue.add(packet);
+					queue.slide(i, i);
+					sum += queue.hasNextToSend() ? 1 : 0;
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark spilledSelectiveRepeatSender(final int backlog) {
+		return new Benchmark("SelectiveRepeatSenderQueue.add+slide(" + backlog + ", spilled)") {
+			private SelectiveRepeatSenderQueue<Packet> queue;
+			private PacketSpillFile spill;
+			private Packet packet = PacketBenchmarks.dataPacket();
+
+			protected void setUp() {
+				if ( spill != null ) {
+					spill.close();
+				}
+				spill = new PacketSpillFile(null);
+				queue = new SelectiveRepeatSenderQueue<Packet>(WINDOW_SIZE);
+				queue.setSpill(spill, SPILL_HORIZON);
+				for ( int i = 0; i < backlog; i++ ) {
+					queue.add(packet);
+				}
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					queue.add(packet);
+					queue.slide(i, i);
+					sum += queue.hasNextToSend() ? 1 : 0;
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark goBackNReceiver(final int windowSize) {
+		return new Benchmark("GoBackNReceiverQueue.add+removeFirst(" + windowSize + ")") {
+			private GoBackNReceiverQueue<Packet> queue;
+			private Packet packet = PacketBenchmarks.dataPacket();
+
+			protected void setUp() {
+				queue = new GoBackNReceiverQueue<Packet>(windowSize);
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					queue.add(queue.seqNumAt(windowSize - 1), packet);
+					sum += queue.removeFirst() != null ? 1 : 0;
+				}
+				return sum;
+			}
+		};
+	}
+
+	private static Benchmark selectiveRepeatReceiver(final int windowSize) {
+		return new Benchmark("SelectiveRepeatReceiverQueue.insert+slide(" + windowSize + ")") {
+			private SelectiveRepeatReceiverQueue<Packet> queue;
+			private Packet packet = PacketBenchmarks.dataPacket();
+
+			protected void setUp() {
+				queue = new SelectiveRepeatReceiverQueue<Packet>(windowSize);
+			}
+
+			protected long run(int ops) {
+				long sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					queue.insert(packet, windowSize - 1);
+					queue.slide(1);
+					sum += queue.getCurrentBaseSeqNum();
+				}
+				return sum;
+			}
+		};
+	}
+}
@@ -0,0 +1,33 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import util.OSIRandom;
+
+/**
+ * @author Phoenix TAN
+ * @description Benchmark of OSIRandom.nextDouble(), drawn several times for every packet sent.
+ * */
+public class RandomBenchmarks {
+
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("OSIRandom.nextDouble") {
+			private OSIRandom random;
+
+			protected void setUp() {
+				random = new OSIRandom(1);
+			}
+
+			protected long run(int ops) {
+				double sum = 0;
+				for ( int i = 0; i < ops; i++ ) {
+					sum += random.nextDouble(i % 5);
+				}
+				return (long) sum;
+			}
+		});
+		return benchmarks;
+	}
+}
@@ -207,6 +207,20 @@ public class Project {
 
 		// simulator = new SelectiveRepeatSimulator(numOfMessages, loss, corrupt, delay, trace, seed, windowsize, timeout);
 		simulator = new GoBackNSimulator(numOfMessages, loss, corrupt, delay, trace, seed, windowsize, timeout);
+		// simulator.setEventList(new event.EventListHeap());
+		// simulator.setEventList(new event.EventListCalendar());
+		// simulator.setEventList(new event.EventListArrays(true));
+		// simulator.setTickLength(1e-6);
+		// simulator.setWireFormat(true);
+		// simulator.setPacketArena(new packet.PacketArena());
+		// simulator.setChecksummer(packet.ZipChecksummer.adler32());
+		// simulator.setPayloadSize(1500);
+		// simulator.setCoalescing(1460, 20);
+		// simulator.setCompressors(new packet.DeltaCompressor(true), new packet.DeltaCompressor(true));
+		// simulator.setBitErrorRate(1e-4, 4);
+		// simulator.setFullSequenceSpace(true);
+		// simulator.setSendBufferCapacity(64);
+		// simulator.setBacklogSpill(1024);
 		simulator.runNumOfMessageSimulator();
 		
 		
@@ -1,7 +1,8 @@
 package event;
 
+import java.nio.ByteBuffer;
+
 import packet.Packet;
-import simulator.NetworkSimulator;
 
 /**
  * @author TA
@@ -9,32 +10,81 @@ import simulator.NetworkSimulator;
 public class Event {
 	
 	private double time;
+	/** time as a long with the same order, compared by the event lists */
+	private long key;
 	private int type;
 	private int entity;
 	private Packet packet;
+	/** a packet in its wire format, when the simulator sends encoded packets */
+	private ByteBuffer frame;
+	/** a cancelled timer stays in the event list and is skipped when it comes up */
+	private boolean cancelled;
+	/** set while the event is back in its EventPool */
+	boolean released;
 
 	public Event(double t, int ty, int ent) {
 		time = t;
+		key = keyOf(t);
 		type = ty;
 		entity = ent;
 		packet = null;
 	}
 
+	/** the event shares p instead of copying it, p must not be written while the event is pending */
 	public Event(double t, int ty, int ent, Packet p) {
 		time = t;
+		key = keyOf(t);
 		type = ty;
 		entity = ent;
-		packet = new Packet(p);
+		packet = p;
+	}
+
+	/** reinitialize a pooled event, p is taken as it is */
+	void reset(double t, int ty, int ent, Packet p) {
+		time = t;
+		key = keyOf(t);
+		type = ty;
+		entity = ent;
+		packet = p;
+		frame = null;
+		cancelled = false;
+		released = false;
+	}
+
+	private void checkNotReleased() {
+		if (released) {
+			throw new IllegalStateException("Event used after release: " + this);
+		}
+	}
+
+	/**
+	 * Map a time to a long that sorts the same way, so that the event lists
+	 * compare integers. In tick mode the key is the tick count instead, see setTicks().
+	 * */
+	public static long keyOf(double t) {
+		long bits = Double.doubleToLongBits(t == 0.0 ? 0.0 : t);
+		// negative doubles sort backwards as raw bits
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	/**
+	 * Set the time in tick mode, to ticks ticks of tickLength time units.
+	 * The tick count is the key, so the event lists order events by exact integers.
+	 * */
+	public void setTicks(long ticks, double tickLength) {
+		time = ticks * tickLength;
+		key = ticks;
 	}
 
 	public boolean setTime(double t) {
 		time = t;
+		key = keyOf(t);
 		return true;
 	}
 
+	/** event types and entities are registered in the SimulatorKernel, ids start at 0 */
 	public boolean setType(int n) {
-		if ((n != NetworkSimulator.TIMERINTERRUPT) && (n != NetworkSimulator.FROMLAYER5)
-				&& (n != NetworkSimulator.FROMLAYER3)) {
+		if (n < 0) {
 			type = -1;
 			return false;
 		}
@@ -44,7 +94,7 @@ public class Event {
 	}
 
 	public boolean setEntity(int n) {
-		if ((n != NetworkSimulator.A) && (n != NetworkSimulator.B)) {
+		if (n < 0) {
 			entity = -1;
 			return false;
 		}
@@ -53,32 +103,56 @@ public class Event {
 		return true;
 	}
 
+	/** the event shares p instead of copying it, p must not be written while the event is pending */
 	public boolean setPacket(Packet p) {
-		if (p == null) {
-			packet = null;
-		} else {
-			packet = new Packet(p.getSeqnum(), p.getAcknum(), p.getChecksum(), p.getPayload());
-		}
-
+		packet = p;
 		return true;
 	}
 
+	public void setFrame(ByteBuffer frame) {
+		this.frame = frame;
+	}
+
 	public double getTime() {
+		checkNotReleased();
 		return time;
 	}
 
+	public long getKey() {
+		checkNotReleased();
+		return key;
+	}
+
 	public int getType() {
+		checkNotReleased();
 		return type;
 	}
 
 	public int getEntity() {
+		checkNotReleased();
 		return entity;
 	}
 
 	public Packet getPacket() {
+		checkNotReleased();
 		return packet;
 	}
 
+	public ByteBuffer getFrame() {
+		checkNotReleased();
+		return frame;
+	}
+
+	public void cancel() {
+		checkNotReleased();
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		checkNotReleased();
+		return cancelled;
+	}
+
 	public String toString() {
 		return ("time: " + time + "  type: " + type + "  entity: " + entity + "packet: " + packet);
 	}
@@ -0,0 +1,11 @@
+package event;
+
+/**
+ * @author Phoenix TAN
+ * @description Called by the simulator kernel when an event of the type and entity
+ * 		it is registered for comes up. The event and its packet are recycled
+ * 		after handle() returns.
+ * */
+public interface EventHandler {
+	public void handle(Event event) throws InterruptedException;
+}
@@ -10,6 +10,8 @@ public interface EventList {
 
 	public Event removeNext();
 
+	public Event peekNext();
+
 	public String toString();
 
 	public Event removeTimer(int entity);
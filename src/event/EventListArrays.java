@@ -0,0 +1,265 @@
+package event;
+
+import simulator.NetworkSimulator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * @author Phoenix TAN
+ * @description An event list that keeps its binary min-heap as parallel primitive columns
+ * 		(time key, insertion order, type, entity and the slot of the event object)
+ * 		instead of an array of Event references, so sifting, removeTimer() and
+ * 		getLastPacketTime() never dereference an Event.
+ * 		The Event objects are only kept in a slot table to be handed back by removeNext().
+ * 		The columns live on the Java heap, or in direct ByteBuffers for populations
+ * 		of millions of events. Ties keep insertion order, like EventListImpl.
+ * */
+public class EventListArrays implements EventList {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final boolean offHeap;
+
+	/** heap columns, position i of every column describes the same event */
+	private LongBuffer keys;
+	private LongBuffer orders;
+	private IntBuffer types;
+	private IntBuffer entities;
+	private IntBuffer slots;
+	private int size;
+	private long nextOrder;
+
+	/** events by slot, and the stack of free slots */
+	private Event[] events;
+	private int[] freeSlots;
+	private int numFreeSlots;
+
+	public EventListArrays() {
+		this(false);
+	}
+
+	/**
+	 * @param offHeap keep the heap columns in direct ByteBuffers
+	 * */
+	public EventListArrays(boolean offHeap) {
+		this.offHeap = offHeap;
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+		nextOrder = 0;
+
+		events = new Event[INITIAL_CAPACITY];
+		freeSlots = new int[INITIAL_CAPACITY];
+		for ( int i = 0; i < INITIAL_CAPACITY; i++ ) {
+			freeSlots[i] = INITIAL_CAPACITY - 1 - i;
+		}
+		numFreeSlots = INITIAL_CAPACITY;
+	}
+
+	public boolean add(Event e) {
+		if ( size == keys.capacity() ) {
+			grow();
+		}
+
+		int slot = freeSlots[--numFreeSlots];
+		events[slot] = e;
+
+		siftUp(size, e.getKey(), nextOrder++, e.getType(), e.getEntity(), slot);
+		size++;
+		return true;
+	}
+
+	public Event removeNext() {
+		if ( size == 0 ) {
+			return null;
+		}
+		return removeAt(0);
+	}
+
+	public Event peekNext() {
+		if ( size == 0 ) {
+			return null;
+		}
+		return events[slots.get(0)];
+	}
+
+	public Event removeTimer(int entity) {
+		// pick the earliest added timer, like the scan in EventListImpl
+		int timerIndex = -1;
+		for ( int i = 0; i < size; i++ ) {
+			if ( types.get(i) == NetworkSimulator.TIMERINTERRUPT && entities.get(i) == entity
+					&& (timerIndex == -1 || orders.get(i) < orders.get(timerIndex)) ) {
+				timerIndex = i;
+			}
+		}
+
+		if ( timerIndex == -1 ) {
+			return null;
+		}
+		return removeAt(timerIndex);
+	}
+
+	public double getLastPacketTime(int entityTo) {
+		// the last added arrival, like the scan in EventListImpl
+		int lastIndex = -1;
+		for ( int i = 0; i < size; i++ ) {
+			if ( types.get(i) == NetworkSimulator.FROMLAYER3 && entities.get(i) == entityTo
+					&& (lastIndex == -1 || orders.get(i) > orders.get(lastIndex)) ) {
+				lastIndex = i;
+			}
+		}
+
+		if ( lastIndex == -1 ) {
+			return 0;
+		}
+		return events[slots.get(lastIndex)].getTime();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for ( int i = 0; i < size; i++ ) {
+			if ( i > 0 ) {
+				sb.append(", ");
+			}
+			sb.append(events[slots.get(i)]);
+		}
+		return sb.append("]").toString();
+	}
+
+	private Event removeAt(int index) {
+		int slot = slots.get(index);
+		Event removed = events[slot];
+		events[slot] = null;
+		freeSlots[numFreeSlots++] = slot;
+
+		size--;
+		if ( index != size ) {
+			// move the last event into the hole and restore the heap order
+			long key = keys.get(size);
+			long order = orders.get(size);
+			int type = types.get(size);
+			int entity = entities.get(size);
+			int lastSlot = slots.get(size);
+
+			int parent = (index - 1) >>> 1;
+			if ( index > 0 && before(key, order, parent) ) {
+				siftUp(index, key, order, type, entity, lastSlot);
+			} else {
+				siftDown(index, key, order, type, entity, lastSlot);
+			}
+		}
+		return removed;
+	}
+
+	/** true if an event with (key, order) comes before the event at position i */
+	private boolean before(long key, long order, int i) {
+		long k = keys.get(i);
+		if ( key != k ) {
+			return key < k;
+		}
+		return order < orders.get(i);
+	}
+
+	/** place the event at the hole at position index, moving parents down */
+	private void siftUp(int index, long key, long order, int type, int entity, int slot) {
+		while ( index > 0 ) {
+			int parent = (index - 1) >>> 1;
+			if ( !before(key, order, parent) ) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		set(index, key, order, type, entity, slot);
+	}
+
+	/** place the event at the hole at position index, moving children up */
+	private void siftDown(int index, long key, long order, int type, int entity, int slot) {
+		while ( true ) {
+			int child = 2 * index + 1;
+			if ( child >= size ) {
+				break;
+			}
+			if ( child + 1 < size && before(keys.get(child + 1), orders.get(child + 1), child) ) {
+				child++;
+			}
+			if ( before(key, order, child) ) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		set(index, key, order, type, entity, slot);
+	}
+
+	private void move(int from, int to) {
+		keys.put(to, keys.get(from));
+		orders.put(to, orders.get(from));
+		types.put(to, types.get(from));
+		entities.put(to, entities.get(from));
+		slots.put(to, slots.get(from));
+	}
+
+	private void set(int index, long key, long order, int type, int entity, int slot) {
+		keys.put(index, key);
+		orders.put(index, order);
+		types.put(index, type);
+		entities.put(index, entity);
+		slots.put(index, slot);
+	}
+
+	private void allocate(int capacity) {
+		if ( offHeap ) {
+			keys = direct(capacity * Long.BYTES).asLongBuffer();
+			orders = direct(capacity * Long.BYTES).asLongBuffer();
+			types = direct(capacity * Integer.BYTES).asIntBuffer();
+			entities = direct(capacity * Integer.BYTES).asIntBuffer();
+			slots = direct(capacity * Integer.BYTES).asIntBuffer();
+		} else {
+			keys = LongBuffer.wrap(new long[capacity]);
+			orders = LongBuffer.wrap(new long[capacity]);
+			types = IntBuffer.wrap(new int[capacity]);
+			entities = IntBuffer.wrap(new int[capacity]);
+			slots = IntBuffer.wrap(new int[capacity]);
+		}
+	}
+
+	private static ByteBuffer direct(int bytes) {
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	private void grow() {
+		int capacity = keys.capacity() * 2;
+
+		LongBuffer oldKeys = keys;
+		LongBuffer oldOrders = orders;
+		IntBuffer oldTypes = types;
+		IntBuffer oldEntities = entities;
+		IntBuffer oldSlots = slots;
+		allocate(capacity);
+		for ( int i = 0; i < size; i++ ) {
+			set(i, oldKeys.get(i), oldOrders.get(i), oldTypes.get(i), oldEntities.get(i), oldSlots.get(i));
+		}
+
+		Event[] oldEvents = events;
+		events = new Event[capacity];
+		System.arraycopy(oldEvents, 0, events, 0, oldEvents.length);
+
+		// the new slots are free, keep the lowest ones on top of the stack
+		freeSlots = new int[capacity];
+		numFreeSlots = 0;
+		for ( int i = capacity - 1; i >= oldEvents.length; i-- ) {
+			freeSlots[numFreeSlots++] = i;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package event;
+
+import simulator.NetworkSimulator;
+
+/**
+ * @author Phoenix TAN
+ * @description An event list implemented as a calendar queue (R. Brown, 1988).
+ * 		Events are hashed by time into buckets of a fixed width, one "day" each,
+ * 		and removeNext() walks the calendar day by day, so add() and removeNext()
+ * 		are O(1) amortized as long as the bucket width matches the gaps between events.
+ * 		The number of buckets follows the population and the width is re-estimated
+ * 		from the gaps between the next few events every time the calendar is resized.
+ * 		Events with the same time are removed in the order they were added,
+ * 		like EventListImpl.
+ * */
+public class EventListCalendar implements EventList {
+
+	private static final int MIN_BUCKETS = 2;
+	/** number of upcoming events used to estimate the bucket width */
+	private static final int SAMPLE_SIZE = 25;
+
+	private static class Node {
+		Event event;
+		long order;
+		Node next;
+
+		Node(Event event, long order) {
+			this.event = event;
+			this.order = order;
+		}
+	}
+
+	private Node[] buckets;
+	private double width;
+	private int size;
+	private long nextOrder;
+
+	/** the day the calendar is currently at, i.e. floor(time / width) */
+	private long currentDay;
+
+	public EventListCalendar() {
+		init(MIN_BUCKETS, 1.0, 0);
+		size = 0;
+		nextOrder = 0;
+	}
+
+	public boolean add(Event e) {
+		insert(new Node(e, nextOrder++));
+		size++;
+
+		if ( size > 2 * buckets.length ) {
+			resize(2 * buckets.length);
+		}
+		return true;
+	}
+
+	public Event removeNext() {
+		if ( size == 0 ) {
+			return null;
+		}
+
+		Node next = removeFirst();
+		if ( size < buckets.length / 2 && buckets.length > MIN_BUCKETS ) {
+			resize(buckets.length / 2);
+		}
+		return next.event;
+	}
+
+	public Event peekNext() {
+		if ( size == 0 ) {
+			return null;
+		}
+		return buckets[findFirst()].event;
+	}
+
+	public Event removeTimer(int entity) {
+		Node timer = null;
+		int timerIndex = -1;
+
+		// pick the earliest added timer, like the scan in EventListImpl
+		for ( int i = 0; i < buckets.length; i++ ) {
+			for ( Node n = buckets[i]; n != null; n = n.next ) {
+				if ( n.event.getType() == NetworkSimulator.TIMERINTERRUPT && n.event.getEntity() == entity
+						&& (timer == null || n.order < timer.order) ) {
+					timer = n;
+					timerIndex = i;
+				}
+			}
+		}
+
+		if ( timer == null ) {
+			return null;
+		}
+
+		if ( buckets[timerIndex] == timer ) {
+			buckets[timerIndex] = timer.next;
+		} else {
+			Node prev = buckets[timerIndex];
+			while ( prev.next != timer ) {
+				prev = prev.next;
+			}
+			prev.next = timer.next;
+		}
+		size--;
+		return timer.event;
+	}
+
+	public double getLastPacketTime(int entityTo) {
+		Node last = null;
+
+		// the last added arrival, like the scan in EventListImpl
+		for ( int i = 0; i < buckets.length; i++ ) {
+			for ( Node n = buckets[i]; n != null; n = n.next ) {
+				if ( n.event.getType() == NetworkSimulator.FROMLAYER3 && n.event.getEntity() == entityTo
+						&& (last == null || n.order > last.order) ) {
+					last = n;
+				}
+			}
+		}
+
+		if ( last == null ) {
+			return 0;
+		}
+		return last.event.getTime();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for ( int i = 0; i < buckets.length; i++ ) {
+			for ( Node n = buckets[i]; n != null; n = n.next ) {
+				if ( sb.length() > 1 ) {
+					sb.append(", ");
+				}
+				sb.append(n.event);
+			}
+		}
+		return sb.append("]").toString();
+	}
+
+	private Node removeFirst() {
+		int index = findFirst();
+		Node next = buckets[index];
+		buckets[index] = next.next;
+
+		size--;
+		return next;
+	}
+
+	/** move the calendar to the day of the earliest event and return its bucket */
+	private int findFirst() {
+		// walk at most one year, then fall back to a direct search
+		for ( int i = 0; i < buckets.length; i++ ) {
+			int index = bucketOf(currentDay);
+			Node head = buckets[index];
+			if ( head != null && dayOf(head.event.getTime()) <= currentDay ) {
+				return index;
+			}
+			currentDay++;
+		}
+
+		int minIndex = -1;
+		for ( int i = 0; i < buckets.length; i++ ) {
+			if ( buckets[i] != null && (minIndex == -1 || before(buckets[i], buckets[minIndex])) ) {
+				minIndex = i;
+			}
+		}
+		currentDay = dayOf(buckets[minIndex].event.getTime());
+		return minIndex;
+	}
+
+	private void init(int numOfBuckets, double bucketWidth, double startTime) {
+		buckets = new Node[numOfBuckets];
+		width = bucketWidth;
+		currentDay = dayOf(startTime);
+	}
+
+	/** insert a node into its bucket, keeping the bucket sorted by (time, order) */
+	private void insert(Node node) {
+		long day = dayOf(node.event.getTime());
+		if ( day < currentDay ) {
+			// an event in the past of the calendar, go back to it
+			currentDay = day;
+		}
+
+		int index = bucketOf(day);
+		Node head = buckets[index];
+		if ( head == null || before(node, head) ) {
+			node.next = head;
+			buckets[index] = node;
+			return;
+		}
+
+		Node prev = head;
+		while ( prev.next != null && !before(node, prev.next) ) {
+			prev = prev.next;
+		}
+		node.next = prev.next;
+		prev.next = node;
+	}
+
+	/**
+	 * Rebuild the calendar with numOfBuckets buckets. The new width is three times
+	 * the average gap between the next SAMPLE_SIZE events, ignoring gaps larger than
+	 * twice the average (Brown's heuristic).
+	 * */
+	private void resize(int numOfBuckets) {
+		// dequeue the next few events to look at their gaps
+		int sampled = Math.min(SAMPLE_SIZE, size);
+		Node[] sample = new Node[sampled];
+		for ( int i = 0; i < sampled; i++ ) {
+			sample[i] = removeFirst();
+		}
+		double newWidth = estimateWidth(sample);
+
+		Node[] old = buckets;
+		double startTime = sampled > 0 ? sample[0].event.getTime() : currentDay * width;
+		init(numOfBuckets, newWidth, startTime);
+
+		for ( Node head : old ) {
+			Node n = head;
+			while ( n != null ) {
+				Node next = n.next;
+				insert(n);
+				n = next;
+			}
+		}
+
+		restore(sample);
+	}
+
+	/** put the sampled events back; they come before every remaining event */
+	private void restore(Node[] sample) {
+		size += sample.length;
+		for ( int i = sample.length - 1; i >= 0; i-- ) {
+			Node n = sample[i];
+			int index = bucketOf(dayOf(n.event.getTime()));
+			n.next = buckets[index];
+			buckets[index] = n;
+		}
+	}
+
+	private double estimateWidth(Node[] sample) {
+		if ( sample.length < 2 ) {
+			return width;
+		}
+
+		double total = sample[sample.length - 1].event.getTime() - sample[0].event.getTime();
+		double average = total / (sample.length - 1);
+		if ( average <= 0 ) {
+			return width;
+		}
+
+		double sum = 0;
+		int count = 0;
+		for ( int i = 1; i < sample.length; i++ ) {
+			double gap = sample[i].event.getTime() - sample[i - 1].event.getTime();
+			if ( gap <= 2 * average ) {
+				sum += gap;
+				count++;
+			}
+		}
+
+		if ( count == 0 || sum <= 0 ) {
+			return 3 * average;
+		}
+		return 3 * sum / count;
+	}
+
+	private long dayOf(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	private int bucketOf(long day) {
+		return (int) Math.floorMod(day, (long) buckets.length);
+	}
+
+	/** true if a should be removed before b */
+	private static boolean before(Node a, Node b) {
+		long ka = a.event.getKey();
+		long kb = b.event.getKey();
+		if ( ka != kb ) {
+			return ka < kb;
+		}
+		return a.order < b.order;
+	}
+}
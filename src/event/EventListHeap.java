@@ -0,0 +1,159 @@
+package event;
+
+import simulator.NetworkSimulator;
+
+import java.util.Arrays;
+
+/**
+ * @author Phoenix TAN
+ * @description An event list backed by an array-based binary min-heap.
+ * 		add() and removeNext() are O(log n) instead of the linear scan in EventListImpl.
+ * 		Events with the same time are removed in the order they were added,
+ * 		which is the order EventListImpl yields, so a seed replays identically.
+ * */
+public class EventListHeap implements EventList {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private Event[] heap;
+	/** insertion order of heap[i], used to break ties on time */
+	private long[] order;
+	private int size;
+	private long nextOrder;
+
+	public EventListHeap() {
+		heap = new Event[INITIAL_CAPACITY];
+		order = new long[INITIAL_CAPACITY];
+		size = 0;
+		nextOrder = 0;
+	}
+
+	public boolean add(Event e) {
+		if ( size == heap.length ) {
+			heap = Arrays.copyOf(heap, size * 2);
+			order = Arrays.copyOf(order, size * 2);
+		}
+		heap[size] = e;
+		order[size] = nextOrder++;
+		siftUp(size);
+		size++;
+		return true;
+	}
+
+	public Event removeNext() {
+		if ( size == 0 ) {
+			return null;
+		}
+		return removeAt(0);
+	}
+
+	public Event peekNext() {
+		if ( size == 0 ) {
+			return null;
+		}
+		return heap[0];
+	}
+
+	public Event removeTimer(int entity) {
+		// pick the earliest added timer, like the scan in EventListImpl
+		int timerIndex = -1;
+		for ( int i = 0; i < size; i++ ) {
+			if ( heap[i].getType() == NetworkSimulator.TIMERINTERRUPT && heap[i].getEntity() == entity
+					&& (timerIndex == -1 || order[i] < order[timerIndex]) ) {
+				timerIndex = i;
+			}
+		}
+
+		if ( timerIndex == -1 ) {
+			return null;
+		}
+		return removeAt(timerIndex);
+	}
+
+	public double getLastPacketTime(int entityTo) {
+		// the last added arrival, like the scan in EventListImpl
+		int lastIndex = -1;
+		for ( int i = 0; i < size; i++ ) {
+			if ( heap[i].getType() == NetworkSimulator.FROMLAYER3 && heap[i].getEntity() == entityTo
+					&& (lastIndex == -1 || order[i] > order[lastIndex]) ) {
+				lastIndex = i;
+			}
+		}
+
+		if ( lastIndex == -1 ) {
+			return 0;
+		}
+		return heap[lastIndex].getTime();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public String toString() {
+		return Arrays.toString(Arrays.copyOf(heap, size));
+	}
+
+	private Event removeAt(int index) {
+		Event removed = heap[index];
+		size--;
+		if ( index != size ) {
+			heap[index] = heap[size];
+			order[index] = order[size];
+			heap[size] = null;
+			siftDown(index);
+			siftUp(index);
+		} else {
+			heap[size] = null;
+		}
+		return removed;
+	}
+
+	/** true if heap[i] should be removed before heap[j] */
+	private boolean before(int i, int j) {
+		long ki = heap[i].getKey();
+		long kj = heap[j].getKey();
+		if ( ki != kj ) {
+			return ki < kj;
+		}
+		return order[i] < order[j];
+	}
+
+	private void siftUp(int index) {
+		while ( index > 0 ) {
+			int parent = (index - 1) >>> 1;
+			if ( !before(index, parent) ) {
+				break;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while ( true ) {
+			int left = 2 * index + 1;
+			if ( left >= size ) {
+				break;
+			}
+			int child = left;
+			if ( left + 1 < size && before(left + 1, left) ) {
+				child = left + 1;
+			}
+			if ( !before(child, index) ) {
+				break;
+			}
+			swap(index, child);
+			index = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		Event e = heap[i];
+		heap[i] = heap[j];
+		heap[j] = e;
+		long o = order[i];
+		order[i] = order[j];
+		order[j] = o;
+	}
+}
@@ -22,23 +22,29 @@ public class EventListImpl implements EventList {
 	}
 
 	public Event removeNext() {
+		Event next = peekNext();
+		if (next != null) {
+			data.removeElement(next);
+		}
+
+		return next;
+	}
+
+	public Event peekNext() {
 		if (data.isEmpty()) {
 			return null;
 		}
 
 		int firstIndex = 0;
-		double first = ((Event) data.elementAt(firstIndex)).getTime();
+		long first = ((Event) data.elementAt(firstIndex)).getKey();
 		for (int i = 0; i < data.size(); i++) {
-			if (((Event) data.elementAt(i)).getTime() < first) {
-				first = ((Event) data.elementAt(i)).getTime();
+			if (((Event) data.elementAt(i)).getKey() < first) {
+				first = ((Event) data.elementAt(i)).getKey();
 				firstIndex = i;
 			}
 		}
 
-		Event next = (Event) data.elementAt(firstIndex);
-		data.removeElement(next);
-
-		return next;
+		return (Event) data.elementAt(firstIndex);
 	}
 
 	public String toString() {
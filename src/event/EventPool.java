@@ -0,0 +1,77 @@
+package event;
+
+import java.util.Arrays;
+
+import packet.Packet;
+
+/**
+ * @author Phoenix TAN
+ * @description A free list of events, so that the main loop of the simulator
+ * 		does not allocate an event for every packet, timer and message.
+ * 		An event given back by release() must not be used any more; using it throws
+ * 		an IllegalStateException until the pool hands it out again.
+ * 		In debug mode released events are never handed out again,
+ * 		so every use after release is detected.
+ * */
+public class EventPool {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private Event[] free;
+	private int numFree;
+	private boolean debug;
+
+	public EventPool() {
+		free = new Event[INITIAL_CAPACITY];
+		numFree = 0;
+		debug = false;
+	}
+
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	public boolean isDebug() {
+		return debug;
+	}
+
+	public Event acquire(double t, int ty, int ent) {
+		return acquire(t, ty, ent, null);
+	}
+
+	/**
+	 * Like new Event(t, ty, ent, p), the event takes p as it is instead of copying it.
+	 * */
+	public Event acquire(double t, int ty, int ent, Packet p) {
+		if (numFree == 0) {
+			Event e = new Event(t, ty, ent);
+			e.reset(t, ty, ent, p);
+			return e;
+		}
+
+		Event e = free[--numFree];
+		free[numFree] = null;
+		e.reset(t, ty, ent, p);
+		return e;
+	}
+
+	public void release(Event e) {
+		if (e.released) {
+			throw new IllegalStateException("Event released twice: " + e);
+		}
+		e.released = true;
+
+		if (debug) {
+			return;
+		}
+
+		if (numFree == free.length) {
+			free = Arrays.copyOf(free, numFree * 2);
+		}
+		free[numFree++] = e;
+	}
+
+	public int getNumFree() {
+		return numFree;
+	}
+}
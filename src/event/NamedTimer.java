@@ -0,0 +1,48 @@
+package event;
+
+/**
+ * @author Phoenix TAN
+ * @description A timer kept in a TimingWheel. An entity can have as many timers as it needs,
+ * 		e.g. one per outstanding packet; the name is only used for tracing.
+ * 		The same timer can be started again after it expires or is stopped.
+ * */
+public class NamedTimer {
+
+	private final int entity;
+	private final String name;
+
+	/** wheel bookkeeping, see TimingWheel */
+	double deadline;
+	long order;
+	boolean scheduled;
+	int level;
+	int slot;
+	NamedTimer prev;
+	NamedTimer next;
+
+	public NamedTimer(int entity, String name) {
+		this.entity = entity;
+		this.name = name;
+		scheduled = false;
+	}
+
+	public int getEntity() {
+		return entity;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getDeadline() {
+		return deadline;
+	}
+
+	public boolean isRunning() {
+		return scheduled;
+	}
+
+	public String toString() {
+		return ("timer: " + name + "  entity: " + entity + "  deadline: " + deadline + "  running: " + scheduled);
+	}
+}
@@ -0,0 +1,10 @@
+package event;
+
+/**
+ * @author Phoenix TAN
+ * @description Called by the simulator kernel when a named timer of the entity
+ * 		it is registered for expires.
+ * */
+public interface TimerHandler {
+	public void expire(NamedTimer timer);
+}
@@ -0,0 +1,253 @@
+package event;
+
+/**
+ * @author Phoenix TAN
+ * @description A hierarchical timing wheel (Varghese and Lauck) for timers only.
+ * 		Time is cut into ticks of a fixed resolution. The wheel has LEVELS levels of SLOTS slots;
+ * 		level k holds the timers whose tick shares every digit above k with the current tick,
+ * 		so starting and stopping a timer is O(1). When the current tick moves into a slot
+ * 		of an upper level, the slot is cascaded into the lower levels.
+ * 		Timers beyond the last level wait in an overflow list.
+ * 		Timers in the same tick come out by exact deadline, then in the order they were started.
+ * 		The current tick follows the simulator's clock through advanceTo(); looking for the next
+ * 		timer does not move it, so a timer started later is placed by the real current tick.
+ * */
+public class TimingWheel {
+
+	private static final int LEVELS = 4;
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int MASK = SLOTS - 1;
+
+	private final double resolution;
+
+	/** heads of the slot lists and a bitmap of the non-empty slots of each level */
+	private final NamedTimer[][] slots;
+	private final long[] occupied;
+	private NamedTimer overflow;
+
+	/** the current tick, no timer is due before it */
+	private long now;
+	private int size;
+	private long nextOrder;
+
+	/**
+	 * @param resolution length of a tick in simulated time units
+	 * */
+	public TimingWheel(double resolution) {
+		this.resolution = resolution;
+		slots = new NamedTimer[LEVELS][SLOTS];
+		occupied = new long[LEVELS];
+		overflow = null;
+		now = 0;
+		size = 0;
+		nextOrder = 0;
+	}
+
+	/**
+	 * Start timer so that it expires at deadline. A running timer is moved.
+	 * */
+	public void schedule(NamedTimer timer, double deadline) {
+		if ( timer.scheduled ) {
+			unlink(timer);
+			size--;
+		}
+		timer.deadline = deadline;
+		timer.order = nextOrder++;
+		timer.scheduled = true;
+		link(timer);
+		size++;
+	}
+
+	/**
+	 * Stop timer. Returns false if it was not running.
+	 * */
+	public boolean cancel(NamedTimer timer) {
+		if ( !timer.scheduled ) {
+			return false;
+		}
+		unlink(timer);
+		timer.scheduled = false;
+		size--;
+		return true;
+	}
+
+	/**
+	 * The timer that expires first, without removing it. null if there is none.
+	 * The current tick does not move.
+	 * */
+	public NamedTimer peek() {
+		if ( size == 0 ) {
+			return null;
+		}
+
+		// a level only holds timers after every timer of the levels below it,
+		// and in the lowest non-empty level the first slot after the current one holds the earliest
+		for ( int level = 0; level < LEVELS; level++ ) {
+			int current = (int) (now >>> (SLOT_BITS * level)) & MASK;
+			long bits = occupied[level] & (-1L << current);
+			if ( bits != 0 ) {
+				return earliest(slots[level][Long.numberOfTrailingZeros(bits)]);
+			}
+		}
+		return earliest(overflow);
+	}
+
+	/**
+	 * Move the current tick up to the tick of time, as the simulator's clock reaches it.
+	 * Timers of the ticks passed over are due at once; the slots the current tick
+	 * moves into are cascaded into the lower levels.
+	 * */
+	public void advanceTo(double time) {
+		long target = (long) Math.floor(time / resolution);
+		if ( target <= now ) {
+			return;
+		}
+		long diff = now ^ target;
+		now = target;
+		if ( size == 0 ) {
+			return;
+		}
+
+		// the timers of the levels below the highest digit that changed, and of its slots
+		// up to the new digit, are no longer placed relative to now
+		int top = (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+		NamedTimer moved = null;
+		for ( int level = 0; level < LEVELS && level <= top; level++ ) {
+			long bits = occupied[level];
+			if ( level == top ) {
+				bits &= -1L >>> (63 - ((int) (now >>> (SLOT_BITS * level)) & MASK));
+			}
+			while ( bits != 0 ) {
+				int index = Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				moved = detach(slots[level][index], moved);
+				slots[level][index] = null;
+				occupied[level] &= ~(1L << index);
+			}
+		}
+		if ( top >= LEVELS ) {
+			moved = detach(overflow, moved);
+			overflow = null;
+		}
+
+		while ( moved != null ) {
+			NamedTimer next = moved.next;
+			link(moved);
+			moved = next;
+		}
+	}
+
+	/**
+	 * Remove and return the timer that expires first. null if there is none.
+	 * */
+	public NamedTimer poll() {
+		NamedTimer timer = peek();
+		if ( timer != null ) {
+			cancel(timer);
+		}
+		return timer;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for ( int level = 0; level < LEVELS; level++ ) {
+			for ( int index = 0; index < SLOTS; index++ ) {
+				for ( NamedTimer t = slots[level][index]; t != null; t = t.next ) {
+					sb.append(sb.length() > 1 ? ", " : "").append(t);
+				}
+			}
+		}
+		for ( NamedTimer t = overflow; t != null; t = t.next ) {
+			sb.append(sb.length() > 1 ? ", " : "").append(t);
+		}
+		return sb.append("]").toString();
+	}
+
+	private long tickOf(double deadline) {
+		long tick = (long) Math.floor(deadline / resolution);
+		// a deadline already passed is due now
+		return Math.max(tick, now);
+	}
+
+	private void link(NamedTimer timer) {
+		long tick = tickOf(timer.deadline);
+		long diff = tick ^ now;
+
+		for ( int level = 0; level < LEVELS; level++ ) {
+			if ( (diff >>> (SLOT_BITS * (level + 1))) == 0 ) {
+				int index = (int) (tick >>> (SLOT_BITS * level)) & MASK;
+				timer.level = level;
+				timer.slot = index;
+				timer.prev = null;
+				timer.next = slots[level][index];
+				if ( timer.next != null ) {
+					timer.next.prev = timer;
+				}
+				slots[level][index] = timer;
+				occupied[level] |= 1L << index;
+				return;
+			}
+		}
+
+		timer.level = LEVELS;
+		timer.prev = null;
+		timer.next = overflow;
+		if ( overflow != null ) {
+			overflow.prev = timer;
+		}
+		overflow = timer;
+	}
+
+	private void unlink(NamedTimer timer) {
+		if ( timer.next != null ) {
+			timer.next.prev = timer.prev;
+		}
+
+		if ( timer.prev != null ) {
+			timer.prev.next = timer.next;
+		} else if ( timer.level == LEVELS ) {
+			overflow = timer.next;
+		} else {
+			slots[timer.level][timer.slot] = timer.next;
+			if ( timer.next == null ) {
+				occupied[timer.level] &= ~(1L << timer.slot);
+			}
+		}
+
+		timer.prev = null;
+		timer.next = null;
+	}
+
+	/** push the timers of the list head onto the list moved, to be linked again; returns the new head of moved */
+	private static NamedTimer detach(NamedTimer head, NamedTimer moved) {
+		NamedTimer t = head;
+		while ( t != null ) {
+			NamedTimer next = t.next;
+			t.prev = null;
+			t.next = moved;
+			moved = t;
+			t = next;
+		}
+		return moved;
+	}
+
+	/** the timer of a slot list that expires first */
+	private static NamedTimer earliest(NamedTimer head) {
+		NamedTimer first = head;
+		for ( NamedTimer t = head.next; t != null; t = t.next ) {
+			if ( t.deadline < first.deadline || (t.deadline == first.deadline && t.order < first.order) ) {
+				first = t;
+			}
+		}
+		return first;
+	}
+}
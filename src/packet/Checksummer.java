@@ -0,0 +1,13 @@
+package packet;
+
+/**
+ * @author Phoenix TAN
+ * @description Computes the checksum of a packet, over its sequence number, ACK number,
+ * 		SACK (when its flag is set) and payload. The checksum field itself is not covered.
+ * 		An instance keeps its working state between calls, so it allocates nothing per packet,
+ * 		and must not be shared between threads.
+ * */
+public interface Checksummer {
+
+	long checksum(Packet packet);
+}
@@ -0,0 +1,247 @@
+package packet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Phoenix TAN
+ * @description A FrameCompressor in the spirit of ROHC: the header of a frame is sent as its
+ * 		differences from the header of the previous frame in the same direction, and optionally
+ * 		the rest of the frame, SACK and payload, is run-length encoded (PackBits), which suits
+ * 		the payloads of repeated characters layer 5 sends. A compressed frame is:
+ * 			varint	size of the frame
+ * 			byte	mask of the header fields that changed, bit i for field i below
+ * 			the changed fields: seqnum, acknum and payload length as zigzag varints of
+ * 				their differences, flags and number of SACK blocks as shorts,
+ * 				checksum as an unsigned varint, send time as a double
+ * 			the SACK and payload, as they are or run-length encoded
+ * */
+public class DeltaCompressor implements FrameCompressor {
+
+	/** header fields and their offsets, see PacketCodec */
+	private static final int SEQNUM = 0;
+	private static final int ACKNUM = 1;
+	private static final int FLAGS = 2;
+	private static final int NUM_SACK = 3;
+	private static final int CHECKSUM = 4;
+	private static final int SEND_TIME = 5;
+	private static final int LENGTH = 6;
+	private static final int[] OFFSETS = { 0, 4, 8, 10, 12, 20, 28 };
+	private static final int[] SIZES = { 4, 4, 2, 2, 8, 8, 4 };
+
+	/** longest run or literal block of the run-length encoding */
+	private static final int MAX_BLOCK = 128;
+
+	private final boolean runLength;
+
+	/** the previous header at the sending end and at the receiving end */
+	private final ByteBuffer sent;
+	private final ByteBuffer received;
+
+	/**
+	 * @param runLength run-length encode the SACK and payload, not only the header
+	 * */
+	public DeltaCompressor(boolean runLength) {
+		this.runLength = runLength;
+		sent = ByteBuffer.allocate(PacketCodec.HEADER_SIZE);
+		received = ByteBuffer.allocate(PacketCodec.HEADER_SIZE);
+	}
+
+	public int maxCompressedSize(int frameSize) {
+		// the varints take at most 5 bytes for an int and 10 for a long
+		int header = 5 + 1 + 5 + 5 + 2 + 2 + 10 + 8 + 5;
+		return header + frameSize + (frameSize + MAX_BLOCK - 1) / MAX_BLOCK;
+	}
+
+	public void compress(ByteBuffer frame, ByteBuffer out) {
+		int start = frame.position();
+		int size = frame.remaining();
+		putVarint(out, size);
+
+		int maskPosition = out.position();
+		out.put((byte) 0);
+		int mask = 0;
+		for (int field = 0; field < OFFSETS.length; field++) {
+			if (!changed(frame, start, field)) {
+				continue;
+			}
+			mask |= 1 << field;
+			int offset = start + OFFSETS[field];
+			switch (field) {
+			case SEQNUM:
+			case ACKNUM:
+			case LENGTH:
+				putVarint(out, zigzag(frame.getInt(offset) - sent.getInt(OFFSETS[field])));
+				break;
+			case FLAGS:
+			case NUM_SACK:
+				out.putShort(frame.getShort(offset));
+				break;
+			case CHECKSUM:
+				putVarint(out, frame.getLong(offset));
+				break;
+			case SEND_TIME:
+				out.putDouble(frame.getDouble(offset));
+				break;
+			}
+		}
+		out.put(maskPosition, (byte) mask);
+
+		for (int i = 0; i < PacketCodec.HEADER_SIZE; i++) {
+			sent.put(i, frame.get(start + i));
+		}
+
+		int rest = start + PacketCodec.HEADER_SIZE;
+		int end = start + size;
+		if (runLength) {
+			encodeRuns(frame, rest, end, out);
+		} else {
+			for (int i = rest; i < end; i++) {
+				out.put(frame.get(i));
+			}
+		}
+		frame.position(end);
+	}
+
+	public int decompressedSize(ByteBuffer in) {
+		return (int) getVarint(in.duplicate());
+	}
+
+	public void decompress(ByteBuffer in, ByteBuffer frame) {
+		int size = (int) getVarint(in);
+		int mask = in.get() & 0xFF;
+		for (int field = 0; field < OFFSETS.length; field++) {
+			if ((mask & (1 << field)) == 0) {
+				continue;
+			}
+			int offset = OFFSETS[field];
+			switch (field) {
+			case SEQNUM:
+			case ACKNUM:
+			case LENGTH:
+				received.putInt(offset, received.getInt(offset) + unzigzag((int) getVarint(in)));
+				break;
+			case FLAGS:
+			case NUM_SACK:
+				received.putShort(offset, in.getShort());
+				break;
+			case CHECKSUM:
+				received.putLong(offset, getVarint(in));
+				break;
+			case SEND_TIME:
+				received.putDouble(offset, in.getDouble());
+				break;
+			}
+		}
+
+		int start = frame.position();
+		for (int i = 0; i < PacketCodec.HEADER_SIZE; i++) {
+			frame.put(start + i, received.get(i));
+		}
+
+		int rest = start + PacketCodec.HEADER_SIZE;
+		int end = start + size;
+		if (runLength) {
+			decodeRuns(in, frame, rest, end);
+		} else {
+			for (int i = rest; i < end; i++) {
+				frame.put(i, in.get());
+			}
+		}
+		frame.position(end);
+	}
+
+	private boolean changed(ByteBuffer frame, int start, int field) {
+		int offset = OFFSETS[field];
+		for (int i = 0; i < SIZES[field]; i++) {
+			if (frame.get(start + offset + i) != sent.get(offset + i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * PackBits: a block starts with a byte n, n >= 0 for n + 1 literal bytes,
+	 * n < 0 for one byte repeated 1 - n times.
+	 * */
+	private static void encodeRuns(ByteBuffer frame, int from, int to, ByteBuffer out) {
+		int i = from;
+		while (i < to) {
+			byte b = frame.get(i);
+			int run = 1;
+			while (i + run < to && run < MAX_BLOCK && frame.get(i + run) == b) {
+				run++;
+			}
+			if (run >= 3) {
+				out.put((byte) (1 - run));
+				out.put(b);
+				i += run;
+				continue;
+			}
+
+			// literals, up to the next run of three
+			int literal = i;
+			while (literal < to && literal - i < MAX_BLOCK) {
+				if (literal + 2 < to && frame.get(literal) == frame.get(literal + 1) && frame.get(literal) == frame.get(literal + 2)) {
+					break;
+				}
+				literal++;
+			}
+			out.put((byte) (literal - i - 1));
+			for (int j = i; j < literal; j++) {
+				out.put(frame.get(j));
+			}
+			i = literal;
+		}
+	}
+
+	private static void decodeRuns(ByteBuffer in, ByteBuffer frame, int from, int to) {
+		int i = from;
+		while (i < to) {
+			int n = in.get();
+			if (n >= 0) {
+				for (int j = 0; j <= n; j++) {
+					frame.put(i++, in.get());
+				}
+			} else {
+				byte b = in.get();
+				for (int j = 0; j < 1 - n; j++) {
+					frame.put(i++, b);
+				}
+			}
+		}
+	}
+
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	/** an unsigned varint, 7 bits per byte with the high bit set on all bytes but the last */
+	private static void putVarint(ByteBuffer out, long n) {
+		while ((n & ~0x7FL) != 0) {
+			out.put((byte) ((n & 0x7F) | 0x80));
+			n >>>= 7;
+		}
+		out.put((byte) n);
+	}
+
+	private static long getVarint(ByteBuffer in) {
+		long n = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			n |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return n;
+	}
+
+	public String toString() {
+		return runLength ? "delta headers, run-length payloads" : "delta headers";
+	}
+}
@@ -0,0 +1,31 @@
+package packet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Phoenix TAN
+ * @description Compresses the encoded packets of one direction of the network (see PacketCodec),
+ * 		and decompresses them at the other end. An instance keeps the context of both ends,
+ * 		e.g. the previous header, so frames must be decompressed in the order they were compressed;
+ * 		the medium does not reorder, and lost packets are never compressed.
+ * */
+public interface FrameCompressor {
+
+	/** the most bytes compress() can write for a frame of frameSize bytes */
+	int maxCompressedSize(int frameSize);
+
+	/**
+	 * Compress the frame from its position to its limit into out, from its position,
+	 * and advance both positions.
+	 * */
+	void compress(ByteBuffer frame, ByteBuffer out);
+
+	/** the size of the frame compressed at the position of in */
+	int decompressedSize(ByteBuffer in);
+
+	/**
+	 * Decompress the frame at the position of in into frame, from its position,
+	 * and advance both positions.
+	 * */
+	void decompress(ByteBuffer in, ByteBuffer frame);
+}
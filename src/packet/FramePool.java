@@ -0,0 +1,47 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @author Phoenix TAN
+ * @description A free list of the buffers that carry encoded packets through the network.
+ * 		acquire(size) hands out a buffer with at least size bytes, positioned at 0 and limited
+ * 		to size; buffers too small for a request are dropped and replaced by a bigger one.
+ * */
+public class FramePool {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private ByteBuffer[] free;
+	private int numFree;
+
+	public FramePool() {
+		free = new ByteBuffer[INITIAL_CAPACITY];
+		numFree = 0;
+	}
+
+	public ByteBuffer acquire(int size) {
+		if (numFree > 0) {
+			ByteBuffer frame = free[--numFree];
+			free[numFree] = null;
+			if (frame.capacity() >= size) {
+				frame.clear();
+				frame.limit(size);
+				return frame;
+			}
+		}
+		return ByteBuffer.allocate(size);
+	}
+
+	public void release(ByteBuffer frame) {
+		if (numFree == free.length) {
+			free = Arrays.copyOf(free, numFree * 2);
+		}
+		free[numFree++] = frame;
+	}
+
+	public int getNumFree() {
+		return numFree;
+	}
+}
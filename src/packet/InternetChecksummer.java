@@ -0,0 +1,94 @@
+package packet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Phoenix TAN
+ * @description The 16-bit one's complement checksum of IP, UDP and TCP (RFC 1071) over the
+ * 		same fields as ZipChecksummer: seqnum and acknum, the SACK blocks and the payload,
+ * 		taken as 16-bit words in network byte order, an odd last byte padded with zero.
+ * 		It is cheap but weak: it misses swapped words and many multi-bit errors.
+ * 		The fields of a PacketView are read from its slot, where they are laid out the same way.
+ * */
+public class InternetChecksummer implements Checksummer {
+
+	public long checksum(Packet packet) {
+		if (packet instanceof PacketView) {
+			return checksum((PacketView) packet);
+		}
+
+		long sum = 0;
+		sum += words(packet.getSeqnum());
+		sum += words(packet.getAcknum());
+
+		SelectiveAck sACK = packet.getsACK();
+		if (packet.isFlag() && sACK != null) {
+			sum += words(sACK.getCumulativeAck());
+			sum += words(sACK.getModulus());
+			for (int i = 0; i < sACK.getNumBlocks(); i++) {
+				sum += words(sACK.getLeftEdge(i));
+				sum += words(sACK.getRightEdge(i));
+			}
+		}
+
+		byte[] payload = packet.getPayloadBytes();
+		if (payload != null) {
+			int i = 0;
+			for (; i + 1 < payload.length; i += 2) {
+				sum += ((payload[i] & 0xFF) << 8) | (payload[i + 1] & 0xFF);
+			}
+			if (i < payload.length) {
+				sum += (payload[i] & 0xFF) << 8;
+			}
+		}
+
+		return fold(sum);
+	}
+
+	/* The same words from the slot of a view: seqnum and acknum start its header, the SACK and the payload follow it */
+	private long checksum(PacketView view) {
+		ByteBuffer slab = view.slab();
+		int offset = view.offset();
+
+		long sum = words(slab, offset, 2 * Integer.BYTES);
+		int sackSize = PacketCodec.getSACKSize(slab, offset);
+		if (view.isFlag() && sackSize > 0) {
+			sum += words(slab, offset + PacketCodec.HEADER_SIZE, sackSize);
+		}
+		int length = PacketCodec.getPayloadLength(slab, offset);
+		if (length > 0) {
+			sum += words(slab, offset + PacketCodec.HEADER_SIZE + sackSize, length);
+		}
+		return fold(sum);
+	}
+
+	/** fold the carries back in and take the complement */
+	private static long fold(long sum) {
+		while ((sum >>> 16) != 0) {
+			sum = (sum & 0xFFFF) + (sum >>> 16);
+		}
+		return ~sum & 0xFFFF;
+	}
+
+	/** the sum of the 16-bit words of length bytes from from, an odd last byte padded with zero */
+	private static long words(ByteBuffer buffer, int from, int length) {
+		long sum = 0;
+		int i = 0;
+		for (; i + 1 < length; i += 2) {
+			sum += buffer.getShort(from + i) & 0xFFFF;
+		}
+		if (i < length) {
+			sum += (buffer.get(from + i) & 0xFF) << 8;
+		}
+		return sum;
+	}
+
+	/** the sum of the two 16-bit words of n */
+	private static long words(int n) {
+		return (n >>> 16) + (n & 0xFFFF);
+	}
+
+	public String toString() {
+		return "Internet";
+	}
+}
@@ -1,39 +1,56 @@
 package packet;
 
+import java.nio.charset.StandardCharsets;
+
 import simulator.NetworkSimulator;
 
 /**
  * @author CS-655
  * @description The unit of data passed between the upper layers and your protocols.
+ * 		The data is kept as bytes, one per character (ISO-8859-1).
  */
 public class Message { 
 	
-	private String data;	
+	private static final byte[] EMPTY = new byte[0];
+
+	private byte[] data;	
 
 	public Message(String inputData) {
-		if (inputData == null) {
-			data = "";
-		} else if (inputData.length() > NetworkSimulator.MAXDATASIZE) {
-			data = "";
-		} else {
-			data = new String(inputData);
-		}
+		setData(inputData);
+	}
+
+	/**
+	 * The message takes inputData as it is, without copying it, so it must not be modified afterwards.
+	 * */
+	public Message(byte[] inputData) {
+		setData(inputData);
 	}
 
 	public boolean setData(String inputData) {
+		return setData(inputData == null ? null : inputData.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	public boolean setData(byte[] inputData) {
 		if (inputData == null) {
-			data = "";
+			data = EMPTY;
 			return false;
-		} else if (inputData.length() > NetworkSimulator.MAXDATASIZE) {
-			data = "";
+		} else if (inputData.length > NetworkSimulator.MAX_PAYLOAD_SIZE) {
+			data = EMPTY;
 			return false;
 		} else {
-			data = new String(inputData);
+			data = inputData;
 			return true;
 		}
 	}
 
 	public String getData() {
+		return new String(data, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * The data itself, to be put into a packet without copying it. Do not modify it.
+	 * */
+	public byte[] getDataBytes() {
 		return data;
 	}
 	
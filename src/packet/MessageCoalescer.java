@@ -0,0 +1,114 @@
+package packet;
+
+import java.util.Arrays;
+
+/**
+ * @author Phoenix TAN
+ * @description Coalesces consecutive messages into the payload of one packet, like Nagle's algorithm,
+ * 		until the payload would grow past maxPayloadSize bytes.
+ * 		Every message is framed by its length as a varint, 7 bits per byte with the high bit set
+ * 		on all bytes but the last (1 byte up to 127, 2 up to 16383, 3 up to 2097151),
+ * 		so the receiver can split the payload back into its messages with getLength() and lengthSize().
+ * */
+public class MessageCoalescer {
+
+	private final int maxPayloadSize;
+
+	private byte[] buffer;
+	private int size;
+	private int numMessages;
+
+	public MessageCoalescer(int maxPayloadSize) {
+		this.maxPayloadSize = maxPayloadSize;
+		buffer = new byte[maxPayloadSize];
+		size = 0;
+		numMessages = 0;
+	}
+
+	/** true if message still fits in the payload after the messages added so far */
+	public boolean fits(byte[] message) {
+		return size + framedSize(message.length) <= maxPayloadSize;
+	}
+
+	/**
+	 * Append message to the payload. A message that does not fit is appended anyway,
+	 * check fits() first.
+	 * */
+	public void add(byte[] message) {
+		int newSize = size + framedSize(message.length);
+		if (newSize > buffer.length) {
+			buffer = Arrays.copyOf(buffer, newSize);
+		}
+
+		size = putLength(buffer, size, message.length);
+		System.arraycopy(message, 0, buffer, size, message.length);
+		size += message.length;
+		numMessages++;
+	}
+
+	/** the payload of the messages added so far, and start over with an empty one */
+	public byte[] drain() {
+		byte[] payload = Arrays.copyOf(buffer, size);
+		size = 0;
+		numMessages = 0;
+		return payload;
+	}
+
+	public boolean isEmpty() {
+		return numMessages == 0;
+	}
+
+	public int getNumMessages() {
+		return numMessages;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxPayloadSize() {
+		return maxPayloadSize;
+	}
+
+	/** the bytes a message of length bytes takes in a payload, with its length */
+	public static int framedSize(int length) {
+		return lengthSize(length) + length;
+	}
+
+	/** the bytes the varint of length takes */
+	public static int lengthSize(int length) {
+		int n = 1;
+		while ((length >>>= 7) != 0) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * The length of the message framed at offset in payload. A varint cut short
+	 * by the end of the payload, e.g. a corrupted one, yields what was read of it.
+	 * */
+	public static int getLength(byte[] payload, int offset) {
+		int length = 0;
+		int shift = 0;
+		for (int i = offset; i < payload.length && shift < Integer.SIZE; i++) {
+			byte b = payload[i];
+			length |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				break;
+			}
+			shift += 7;
+		}
+		return length;
+	}
+
+	/** write the varint of length at offset and return the offset just past it */
+	private static int putLength(byte[] bytes, int offset, int length) {
+		while ((length & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((length & 0x7F) | 0x80);
+			length >>>= 7;
+		}
+		bytes[offset++] = (byte) length;
+		return offset;
+	}
+}
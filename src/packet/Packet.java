@@ -2,12 +2,13 @@ package packet;
 
 import simulator.NetworkSimulator;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author CS-655
  * @description The unit of data passed between your routines and the network layer
+ * 		The payload is kept as bytes, one per character (ISO-8859-1). A payload array and a SelectiveAck
+ * 		are never modified once they are in a packet, so copies of a packet share them instead of copying them.
  */
 public class Packet {
 	
@@ -17,36 +18,48 @@ public class Packet {
 	private int seqnum;
 	private int acknum;
 	private long checksum;		/** modified by Phoenix TAN */
-	private String payload;
+	private byte[] payload;
 	private boolean flag; // if there are optional field used, like sACK
-	private List<Integer> sACK;
+	private SelectiveAck sACK;
+	private static final byte[] EMPTY = new byte[0];
+	/** set while the packet is back in its PacketPool */
+	boolean released;
+	/** set while a protocol keeps the packet, so the network copies it instead of taking it */
+	private boolean kept;
+
+	/** for PacketView, which keeps the fields in a PacketArena */
+	protected Packet() {
+	}
 
 	public Packet(Packet p) {
 		seqnum = p.getSeqnum();
 		acknum = p.getAcknum();
 		checksum = p.getChecksum();
-		payload = new String(p.getPayload());
-		List<Integer> _sACK = p.getsACK();
-		sACK = new ArrayList<Integer>();
-		for ( Integer sack: _sACK ) {
-			sACK.add(sack);
-		}
-		sendTime = p.sendTime;
-		isRetransmitted = p.isRetransmitted;
+		payload = p.getPayloadBytes();
+		sACK = p.getsACK();
+		sendTime = p.getSendTime();
+		isRetransmitted = p.isRetransmitted();
 	}
 
 	public Packet(int seq, int ack, long check, String newPayload) {
+		this(seq, ack, check, newPayload == null ? null : newPayload.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * The packet takes newPayload as it is, without copying it, so it must not be modified afterwards.
+	 * */
+	public Packet(int seq, int ack, long check, byte[] newPayload) {
 		seqnum = seq;
 		acknum = ack;
 		checksum = check;
 		if (newPayload == null) {
-			payload = "";
-		} else if (newPayload.length() > NetworkSimulator.MAXDATASIZE) {
+			payload = EMPTY;
+		} else if (newPayload.length > NetworkSimulator.MAX_PAYLOAD_SIZE) {
 			payload = null;
 		} else {
-			payload = new String(newPayload);
+			payload = newPayload;
 		}
-		sACK = new ArrayList<>();
+		sACK = null;
 		sendTime = 0;
 		isRetransmitted = false;
 	}
@@ -55,12 +68,35 @@ public class Packet {
 		seqnum = seq;
 		acknum = ack;
 		checksum = check;
-		payload = "";
-		sACK = new ArrayList<>();
+		payload = EMPTY;
+		sACK = null;
 		sendTime = 0;
 		isRetransmitted = false;
 	}
 
+	/**
+	 * Overwrite this packet with a copy of p, reusing its own storage.
+	 * Copies the same fields as Packet(Packet), which does not copy the flag either.
+	 * The payload and the SACK are shared, like in Packet(Packet).
+	 * */
+	void copyFrom(Packet p) {
+		seqnum = p.getSeqnum();
+		acknum = p.getAcknum();
+		checksum = p.getChecksum();
+		payload = p.getPayloadBytes();
+		sACK = p.getsACK();
+		flag = false;
+		sendTime = p.getSendTime();
+		isRetransmitted = p.isRetransmitted();
+		kept = false;
+	}
+
+	private void checkNotReleased() {
+		if (released) {
+			throw new IllegalStateException("Packet used after release: " + this);
+		}
+	}
+
 	public boolean setSeqnum(int n) {
 		seqnum = n;
 		return true;
@@ -77,39 +113,74 @@ public class Packet {
 	}
 
 	public boolean setPayload(String newPayload) {
+		return setPayload(newPayload == null ? null : newPayload.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * The packet takes newPayload as it is, without copying it, so it must not be modified afterwards.
+	 * */
+	public boolean setPayload(byte[] newPayload) {
 		if (newPayload == null) {
-			payload = "";
+			payload = EMPTY;
 			return false;
-		} else if (newPayload.length() > NetworkSimulator.MAXDATASIZE) {
-			payload = "";
+		} else if (newPayload.length > NetworkSimulator.MAX_PAYLOAD_SIZE) {
+			payload = EMPTY;
 			return false;
 		} else {
-			payload = new String(newPayload);
+			payload = newPayload;
 			return true;
 		}
 	}
 
+	/** set the payload without checking or copying it, for PacketCodec */
+	void setPayloadAsIs(byte[] newPayload) {
+		payload = newPayload;
+	}
+
 	public int getSeqnum() {
+		checkNotReleased();
 		return seqnum;
 	}
 
 	public int getAcknum() {
+		checkNotReleased();
 		return acknum;
 	}
 
 	public long getChecksum() {
+		checkNotReleased();
 		return checksum;
 	}
 
 	public String getPayload() {
+		checkNotReleased();
+		if (payload == null) {
+			return null;
+		}
+		return new String(payload, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * The payload itself, shared with the copies of this packet. Do not modify it.
+	 * */
+	public byte[] getPayloadBytes() {
+		checkNotReleased();
 		return payload;
 	}
 	
+	/** the payload length in bytes, -1 for no payload */
+	public int getPayloadLength() {
+		checkNotReleased();
+		return payload == null ? -1 : payload.length;
+	}
+	
 	public String toString() {
-		return ("seqnum: " + seqnum + "  acknum: " + acknum + "  checksum: " + checksum + "  payload: " + payload);
+		String text = payload == null ? null : new String(payload, StandardCharsets.ISO_8859_1);
+		return ("seqnum: " + seqnum + "  acknum: " + acknum + "  checksum: " + checksum + "  payload: " + text);
 	}
 
 	public boolean isFlag() {
+		checkNotReleased();
 		return flag;
 	}
 
@@ -117,15 +188,26 @@ public class Packet {
 		this.flag = flag;
 	}
 
-	public List<Integer> getsACK() {
+	/**
+	 * The selective acknowledgement, null if there is none. It is shared by the copies of this packet.
+	 * */
+	public SelectiveAck getsACK() {
+		checkNotReleased();
 		return sACK;
 	}
 
-	public void setsACK(List<Integer> sACK) {
+	public void setsACK(SelectiveAck sACK) {
 		this.sACK = sACK;
 	}
 
+	/** the number of SACK blocks, -1 for no SACK */
+	public int getNumSACKBlocks() {
+		checkNotReleased();
+		return sACK == null ? -1 : sACK.getNumBlocks();
+	}
+
 	public double getSendTime() {
+		checkNotReleased();
 		return sendTime;
 	}
 
@@ -134,10 +216,23 @@ public class Packet {
 	}
 
 	public boolean isRetransmitted() {
+		checkNotReleased();
 		return isRetransmitted;
 	}
 
 	public void setRetransmitted(boolean isRetransmitted) {
 		this.isRetransmitted = isRetransmitted;
 	}
+
+	/**
+	 * True while a protocol keeps this packet in its buffers and may still write it,
+	 * see NetworkSimulator.keep(). Copies of a packet are not kept.
+	 * */
+	public boolean isKept() {
+		return kept;
+	}
+
+	public void setKept(boolean kept) {
+		this.kept = kept;
+	}
 }
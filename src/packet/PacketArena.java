@@ -0,0 +1,164 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import simulator.NetworkSimulator;
+
+/**
+ * @author Phoenix TAN
+ * @description A slab allocator of packets in direct memory.
+ * 		Every packet takes a fixed-size slot holding its wire format (see PacketCodec),
+ * 		with room for maxPayloadSize bytes of payload and a SACK of up to maxSACKBlocks blocks.
+ * 		Slots are handed out as PacketView objects and reference counted, so that
+ * 		the copies toLayer3() makes of a kept packet share its slot instead of copying it;
+ * 		a view copies the slot only when it is written while shared.
+ * 		Slabs of SLOTS_PER_SLAB slots are added as needed and never given back.
+ * */
+public class PacketArena {
+
+	private static final int SLOTS_PER_SLAB = 1024;
+
+	private final int slotSize;
+	private final List<ByteBuffer> slabs;
+
+	private int[] refCounts;
+	private int[] freeSlots;
+	private int numFree;
+	private int numSlots;
+
+	/** an arena for data packets, without SACK */
+	public PacketArena() {
+		this(-1);
+	}
+
+	/**
+	 * An arena for payloads of up to the default MAXDATASIZE bytes.
+	 * @param maxSACKBlocks the largest SACK a packet can carry, -1 for none
+	 * */
+	public PacketArena(int maxSACKBlocks) {
+		this(maxSACKBlocks, NetworkSimulator.MAXDATASIZE);
+	}
+
+	/**
+	 * @param maxSACKBlocks the largest SACK a packet can carry, -1 for none
+	 * @param maxPayloadSize the largest payload, the payload size of the run
+	 * */
+	public PacketArena(int maxSACKBlocks, int maxPayloadSize) {
+		int sackSize = maxSACKBlocks < 0 ? 0 : SelectiveAck.encodedSize(maxSACKBlocks);
+		slotSize = PacketCodec.HEADER_SIZE + sackSize + maxPayloadSize;
+		slabs = new ArrayList<ByteBuffer>();
+		refCounts = new int[0];
+		freeSlots = new int[0];
+		numFree = 0;
+		numSlots = 0;
+	}
+
+	/**
+	 * Store a copy of p in a new slot and return a view of it, holding the only reference.
+	 * */
+	public PacketView allocate(Packet p) {
+		int slot = newSlot();
+		store(slot, p);
+		PacketView view = new PacketView(this, slot);
+		view.setFlag(p.isFlag());
+		return view;
+	}
+
+	public void retain(int slot) {
+		checkLive(slot);
+		refCounts[slot]++;
+	}
+
+	/** drop a reference, the slot is free again when there are none left */
+	public void release(int slot) {
+		checkLive(slot);
+		if (--refCounts[slot] == 0) {
+			freeSlots[numFree++] = slot;
+		}
+	}
+
+	public int getRefCount(int slot) {
+		return refCounts[slot];
+	}
+
+	/** the number of slots in use */
+	public int getNumUsed() {
+		return numSlots - numFree;
+	}
+
+	public int getNumSlots() {
+		return numSlots;
+	}
+
+	public int getSlotSize() {
+		return slotSize;
+	}
+
+	/* Where a slot lives */
+	ByteBuffer slabOf(int slot) {
+		return slabs.get(slot / SLOTS_PER_SLAB);
+	}
+
+	int offsetOf(int slot) {
+		return (slot % SLOTS_PER_SLAB) * slotSize;
+	}
+
+	/** copy a slot into a new slot with one reference */
+	int copy(int slot) {
+		int copy = newSlot();
+		ByteBuffer from = slabOf(slot);
+		ByteBuffer to = slabOf(copy);
+		to.put(offsetOf(copy), from, offsetOf(slot), slotSize);
+		return copy;
+	}
+
+	/** overwrite a slot with the wire format of p */
+	void store(int slot, Packet p) {
+		if (PacketCodec.encodedSize(p) > slotSize) {
+			throw new IllegalArgumentException("Packet does not fit in a slot of " + slotSize + " bytes: " + p);
+		}
+		ByteBuffer slab = slabOf(slot);
+		slab.clear();
+		slab.position(offsetOf(slot));
+		PacketCodec.encode(p, slab);
+	}
+
+	/** decode a slot into a packet on the heap */
+	Packet load(int slot) {
+		ByteBuffer slab = slabOf(slot);
+		slab.clear();
+		slab.position(offsetOf(slot));
+		return PacketCodec.decode(slab);
+	}
+
+	private void checkLive(int slot) {
+		if (slot < 0 || slot >= numSlots || refCounts[slot] == 0) {
+			throw new IllegalStateException("Packet slot " + slot + " is not allocated");
+		}
+	}
+
+	private int newSlot() {
+		if (numFree == 0) {
+			addSlab();
+		}
+		int slot = freeSlots[--numFree];
+		refCounts[slot] = 1;
+		return slot;
+	}
+
+	private void addSlab() {
+		slabs.add(ByteBuffer.allocateDirect(SLOTS_PER_SLAB * slotSize));
+
+		int capacity = numSlots + SLOTS_PER_SLAB;
+		refCounts = Arrays.copyOf(refCounts, capacity);
+		freeSlots = Arrays.copyOf(freeSlots, capacity);
+		// keep the lowest new slots on top of the stack
+		for (int slot = capacity - 1; slot >= numSlots; slot--) {
+			freeSlots[numFree++] = slot;
+		}
+		numSlots = capacity;
+	}
+}
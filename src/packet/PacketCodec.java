@@ -0,0 +1,243 @@
+package packet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Phoenix TAN
+ * @description The binary wire format of a Packet, in network byte order.
+ * 		A fixed header of HEADER_SIZE bytes:
+ * 			0	int		seqnum
+ * 			4	int		acknum
+ * 			8	short	flags, FLAG_SACK and FLAG_RETRANSMITTED
+ * 			10	short	number of SACK blocks, -1 for no SACK
+ * 			12	long	checksum
+ * 			20	double	send time, the timestamp used to measure the RTT
+ * 			28	int		payload length in bytes, -1 for no payload, up to MAX_PAYLOAD_SIZE
+ * 		followed by the SACK, if any, in the format of SelectiveAck.encode(), and the payload.
+ * 		The payload comes last so it can grow without moving anything.
+ * 		Payload characters are one byte each (ISO-8859-1), like the messages of layer 5.
+ * */
+public class PacketCodec {
+
+	public static final int HEADER_SIZE = 32;
+
+	public static final short FLAG_SACK = 1;
+	public static final short FLAG_RETRANSMITTED = 2;
+
+	private static final int SEQNUM = 0;
+	private static final int ACKNUM = 4;
+	private static final int FLAGS = 8;
+	private static final int NUM_SACK = 10;
+	private static final int CHECKSUM = 12;
+	private static final int SEND_TIME = 20;
+	private static final int LENGTH = 28;
+
+	private PacketCodec() {
+	}
+
+	/** the number of bytes encode() writes for p */
+	public static int encodedSize(Packet p) {
+		int numSACK = p.getNumSACKBlocks();
+		int sackLength = numSACK < 0 ? 0 : SelectiveAck.encodedSize(numSACK);
+		return HEADER_SIZE + sackLength + Math.max(0, p.getPayloadLength());
+	}
+
+	/**
+	 * Write p at the position of buffer, which must have encodedSize(p) bytes remaining,
+	 * and advance the position past it.
+	 * */
+	public static void encode(Packet p, ByteBuffer buffer) {
+		if (p instanceof PacketView) {
+			((PacketView) p).encode(buffer);
+			return;
+		}
+
+		SelectiveAck sACK = p.getsACK();
+		byte[] payload = p.getPayloadBytes();
+
+		short flags = 0;
+		if (p.isFlag()) {
+			flags |= FLAG_SACK;
+		}
+		if (p.isRetransmitted()) {
+			flags |= FLAG_RETRANSMITTED;
+		}
+
+		buffer.putInt(p.getSeqnum());
+		buffer.putInt(p.getAcknum());
+		buffer.putShort(flags);
+		buffer.putShort((short) (sACK == null ? -1 : sACK.getNumBlocks()));
+		buffer.putLong(p.getChecksum());
+		buffer.putDouble(p.getSendTime());
+		buffer.putInt(payload == null ? -1 : payload.length);
+
+		if (sACK != null) {
+			sACK.encode(buffer);
+		}
+		if (payload != null) {
+			buffer.put(payload);
+		}
+	}
+
+	/**
+	 * Read the packet at the position of buffer and advance the position past it.
+	 * */
+	public static Packet decode(ByteBuffer buffer) {
+		Packet p = new Packet(0, 0, 0);
+		decode(buffer, p);
+		return p;
+	}
+
+	/**
+	 * Same as decode(buffer), overwriting p instead of allocating a packet.
+	 * */
+	public static void decode(ByteBuffer buffer, Packet p) {
+		int seqnum = buffer.getInt();
+		int acknum = buffer.getInt();
+		short flags = buffer.getShort();
+		int numSACK = buffer.getShort();
+		long checksum = buffer.getLong();
+		double sendTime = buffer.getDouble();
+		int length = buffer.getInt();
+
+		p.setSeqnum(seqnum);
+		p.setAcknum(acknum);
+		p.setChecksum(checksum);
+		p.setSendTime(sendTime);
+		p.setFlag((flags & FLAG_SACK) != 0);
+		p.setRetransmitted((flags & FLAG_RETRANSMITTED) != 0);
+
+		p.setsACK(numSACK < 0 ? null : SelectiveAck.decode(buffer, numSACK));
+
+		if (length < 0) {
+			p.setPayloadAsIs(null);
+		} else {
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+			p.setPayloadAsIs(payload);
+		}
+	}
+
+	/**
+	 * True if the size bytes at offset in buffer hold exactly one packet decode() can read:
+	 * a number of SACK blocks from -1 to MAX_BLOCKS, a well-formed SACK and a payload length
+	 * that adds up to size. Corrupted bits may break any of them, the checksum only covers the rest.
+	 * */
+	public static boolean isWellFormed(ByteBuffer buffer, int offset, int size) {
+		if (size < HEADER_SIZE) {
+			return false;
+		}
+		int numSACK = getNumSACK(buffer, offset);
+		if (numSACK < -1 || numSACK > SelectiveAck.MAX_BLOCKS) {
+			return false;
+		}
+		int sackLength = numSACK < 0 ? 0 : SelectiveAck.encodedSize(numSACK);
+		if (HEADER_SIZE + sackLength > size) {
+			return false;
+		}
+		if (numSACK >= 0 && !SelectiveAck.isWellFormed(buffer, offset + HEADER_SIZE, numSACK)) {
+			return false;
+		}
+		int length = getPayloadLength(buffer, offset);
+		return length >= -1 && HEADER_SIZE + sackLength + Math.max(0, length) == size;
+	}
+
+	/*
+	 * Fields of an encoded packet starting at offset, read and written in place.
+	 * */
+	public static int getSeqnum(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + SEQNUM);
+	}
+
+	public static int getAcknum(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + ACKNUM);
+	}
+
+	public static short getFlags(ByteBuffer buffer, int offset) {
+		return buffer.getShort(offset + FLAGS);
+	}
+
+	public static long getChecksum(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset + CHECKSUM);
+	}
+
+	public static double getSendTime(ByteBuffer buffer, int offset) {
+		return buffer.getDouble(offset + SEND_TIME);
+	}
+
+	public static int getNumSACK(ByteBuffer buffer, int offset) {
+		return buffer.getShort(offset + NUM_SACK);
+	}
+
+	/** the SACK, null if there is none */
+	public static SelectiveAck getSACK(ByteBuffer buffer, int offset) {
+		int numSACK = getNumSACK(buffer, offset);
+		if (numSACK < 0) {
+			return null;
+		}
+		ByteBuffer sack = buffer.duplicate();
+		sack.position(offset + HEADER_SIZE);
+		return SelectiveAck.decode(sack, numSACK);
+	}
+
+	/** the size of the SACK in bytes, 0 for no SACK; it starts at offset + HEADER_SIZE */
+	public static int getSACKSize(ByteBuffer buffer, int offset) {
+		int numSACK = getNumSACK(buffer, offset);
+		return numSACK < 0 ? 0 : SelectiveAck.encodedSize(numSACK);
+	}
+
+	/** where the payload starts */
+	public static int getPayloadOffset(ByteBuffer buffer, int offset) {
+		return offset + HEADER_SIZE + getSACKSize(buffer, offset);
+	}
+
+	/** the payload length in bytes, -1 for no payload */
+	public static int getPayloadLength(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + LENGTH);
+	}
+
+	/** a copy of the payload, null for no payload */
+	public static byte[] getPayload(ByteBuffer buffer, int offset) {
+		int length = getPayloadLength(buffer, offset);
+		if (length < 0) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		buffer.get(getPayloadOffset(buffer, offset), payload);
+		return payload;
+	}
+
+	public static void setFlags(ByteBuffer buffer, int offset, short flags) {
+		buffer.putShort(offset + FLAGS, flags);
+	}
+
+	public static void setChecksum(ByteBuffer buffer, int offset, long checksum) {
+		buffer.putLong(offset + CHECKSUM, checksum);
+	}
+
+	public static void setSendTime(ByteBuffer buffer, int offset, double sendTime) {
+		buffer.putDouble(offset + SEND_TIME, sendTime);
+	}
+
+	public static void setSeqnum(ByteBuffer buffer, int offset, int seqnum) {
+		buffer.putInt(offset + SEQNUM, seqnum);
+	}
+
+	public static void setAcknum(ByteBuffer buffer, int offset, int acknum) {
+		buffer.putInt(offset + ACKNUM, acknum);
+	}
+
+	/**
+	 * Replace the first payload byte with '?', or make the payload "?" if it is empty.
+	 * An empty payload grows by one byte, so the buffer needs one byte to spare past its limit.
+	 * */
+	public static void corruptPayload(ByteBuffer buffer, int offset) {
+		int length = Math.max(0, buffer.getInt(offset + LENGTH));
+		int payloadOffset = getPayloadOffset(buffer, offset);
+		if (length == 0) {
+			buffer.putInt(offset + LENGTH, 1);
+			buffer.limit(buffer.limit() + 1);
+		}
+		buffer.put(payloadOffset, (byte) '?');
+	}
+}
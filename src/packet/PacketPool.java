@@ -0,0 +1,99 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @author Phoenix TAN
+ * @description A free list of packets, so that the simulator can copy a packet
+ * 		into the network without allocating one every time.
+ * 		A packet given back by release() must not be used any more; using it throws
+ * 		an IllegalStateException until the pool hands it out again.
+ * 		In debug mode released packets are never handed out again,
+ * 		so every use after release is detected.
+ * */
+public class PacketPool {
+
+	private static final int INITIAL_CAPACITY = 64;
+	/** packets released past this many free ones are left to the garbage collector */
+	private static final int MAX_FREE = 4096;
+
+	private Packet[] free;
+	private int numFree;
+	private boolean debug;
+
+	public PacketPool() {
+		free = new Packet[INITIAL_CAPACITY];
+		numFree = 0;
+		debug = false;
+	}
+
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	public boolean isDebug() {
+		return debug;
+	}
+
+	/**
+	 * Get a copy of p, same as new Packet(p).
+	 * A PacketView is not copied, the copy is another view of its slot.
+	 * */
+	public Packet acquire(Packet p) {
+		if (p instanceof PacketView) {
+			return ((PacketView) p).share();
+		}
+		if (numFree == 0) {
+			return new Packet(p);
+		}
+
+		Packet packet = free[--numFree];
+		free[numFree] = null;
+		packet.released = false;
+		packet.copyFrom(p);
+		return packet;
+	}
+
+	/**
+	 * Get the packet encoded at the position of frame, and advance the position past it.
+	 * Like acquire(Packet), the flag is not carried over.
+	 * */
+	public Packet acquire(ByteBuffer frame) {
+		Packet packet;
+		if (numFree == 0) {
+			packet = new Packet(0, 0, 0);
+		} else {
+			packet = free[--numFree];
+			free[numFree] = null;
+			packet.released = false;
+		}
+		PacketCodec.decode(frame, packet);
+		packet.setFlag(false);
+		return packet;
+	}
+
+	public void release(Packet p) {
+		if (p instanceof PacketView) {
+			((PacketView) p).release();
+			return;
+		}
+		if (p.released) {
+			throw new IllegalStateException("Packet released twice: " + p);
+		}
+		p.released = true;
+
+		if (debug || numFree == MAX_FREE) {
+			return;
+		}
+
+		if (numFree == free.length) {
+			free = Arrays.copyOf(free, numFree * 2);
+		}
+		free[numFree++] = p;
+	}
+
+	public int getNumFree() {
+		return numFree;
+	}
+}
@@ -0,0 +1,198 @@
+package packet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import util.BacklogSpill;
+
+/**
+ * @author Phoenix TAN
+ * @description A backlog of packets spilled to a memory-mapped, append-only file.
+ * 		Each packet is appended in its wire format (see PacketCodec) after its length,
+ * 		into segments of segmentSize bytes mapped one at a time; a packet that does not fit
+ * 		in what is left of a segment goes to the next one. removeFirst() reads the packets back
+ * 		in order into new packets, kept in the arena if there is one.
+ * 		The file is rewound whenever it is drained, so it only grows while the backlog is deep;
+ * 		close() deletes it. Segments left behind are unmapped when they are garbage collected.
+ * */
+public class PacketSpillFile implements BacklogSpill<Packet> {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/** the length written where a segment ends before the last bytes of it */
+	private static final int END_OF_SEGMENT = -1;
+	private static final int LENGTH_SIZE = 4;
+
+	private final FileChannel channel;
+	private final int segmentSize;
+	private final PacketArena arena;
+
+	/** the segments being written and read, two views of one mapping when they are the same */
+	private MappedByteBuffer writeSegment;
+	private long writeSegmentStart;
+	private ByteBuffer readSegment;
+	private long readSegmentStart;
+
+	private int size;
+
+	/** statistics */
+	private long numSpilled;
+	private long fileSize;
+
+	/** a file in the default temporary directory, with packets read back kept in arena, or on the heap if it is null */
+	public PacketSpillFile(PacketArena arena) {
+		this(null, DEFAULT_SEGMENT_SIZE, arena);
+	}
+
+	/**
+	 * @param directory where to create the file, null for the default temporary directory
+	 * @param segmentSize the bytes mapped at a time, the largest packet must fit in it
+	 * @param arena where the packets read back are kept, null to keep them on the heap
+	 * */
+	public PacketSpillFile(Path directory, int segmentSize, PacketArena arena) {
+		if (segmentSize < LENGTH_SIZE + PacketCodec.HEADER_SIZE) {
+			throw new IllegalArgumentException("Segment size is too small for a packet: " + segmentSize);
+		}
+		this.segmentSize = segmentSize;
+		this.arena = arena;
+		try {
+			Path path = directory == null ? Files.createTempFile("backlog", ".spill") : Files.createTempFile(directory, "backlog", ".spill");
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create a spill file", e);
+		}
+		writeSegment = null;
+		writeSegmentStart = 0;
+		readSegment = null;
+		readSegmentStart = 0;
+		size = 0;
+		numSpilled = 0;
+		fileSize = 0;
+	}
+
+	/**
+	 * Write p at the end of the file. A packet kept in an arena gives its slot back,
+	 * p must not be used any more.
+	 * */
+	@Override
+	public void append(Packet p) {
+		int length = PacketCodec.encodedSize(p);
+		if (LENGTH_SIZE + length > segmentSize) {
+			throw new IllegalArgumentException("Packet does not fit in a segment of " + segmentSize + " bytes: " + p);
+		}
+		if (writeSegment == null) {
+			writeSegment = map(0);
+			readSegment = writeSegment.duplicate();
+		}
+		if (writeSegment.remaining() < LENGTH_SIZE + length) {
+			if (writeSegment.remaining() >= LENGTH_SIZE) {
+				writeSegment.putInt(END_OF_SEGMENT);
+			}
+			nextWriteSegment();
+		}
+		writeSegment.putInt(length);
+		PacketCodec.encode(p, writeSegment);
+		size++;
+		numSpilled++;
+
+		if (p instanceof PacketView) {
+			((PacketView) p).release();
+		}
+	}
+
+	/** read the first packet back, kept (see Packet.isKept()), null if the file is empty */
+	@Override
+	public Packet removeFirst() {
+		if (size == 0) {
+			return null;
+		}
+		if (readSegment.remaining() < LENGTH_SIZE || readSegment.getInt(readSegment.position()) == END_OF_SEGMENT) {
+			nextReadSegment();
+		}
+		int length = readSegment.getInt();
+		int end = readSegment.position() + length;
+		Packet p = PacketCodec.decode(readSegment);
+		readSegment.position(end);
+
+		size--;
+		if (size == 0) {
+			rewind();
+		}
+
+		Packet kept = arena == null ? p : arena.allocate(p);
+		kept.setKept(true);
+		return kept;
+	}
+
+	/** the number of packets in the file */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** delete the file */
+	@Override
+	public void close() {
+		writeSegment = null;
+		readSegment = null;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** the packets appended so far */
+	public long getNumSpilled() {
+		return numSpilled;
+	}
+
+	/** the size the file has grown to, in bytes */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/* Start writing and reading from the start of the file again, it is empty; the first segment is mapped again when needed */
+	private void rewind() {
+		readSegmentStart = 0;
+		if (writeSegmentStart == 0) {
+			writeSegment.clear();
+			readSegment = writeSegment.duplicate();
+		} else {
+			writeSegmentStart = 0;
+			writeSegment = null;
+			readSegment = null;
+		}
+	}
+
+	private void nextWriteSegment() {
+		writeSegmentStart += segmentSize;
+		writeSegment = map(writeSegmentStart);
+	}
+
+	private void nextReadSegment() {
+		readSegmentStart += segmentSize;
+		if (readSegmentStart == writeSegmentStart) {
+			readSegment = writeSegment.duplicate();
+			readSegment.clear();
+		} else {
+			readSegment = map(readSegmentStart);
+		}
+	}
+
+	private MappedByteBuffer map(long start) {
+		try {
+			MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+			fileSize = Math.max(fileSize, start + segmentSize);
+			return segment;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot map the spill file at " + start, e);
+		}
+	}
+}
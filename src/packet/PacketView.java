@@ -0,0 +1,178 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Phoenix TAN
+ * @description A packet stored in a slot of a PacketArena. The view holds no packet data
+ * 		except the flag, which belongs to the view like it belongs to each copy of a Packet.
+ * 		share() returns another view of the same slot and takes a reference; writing a shared
+ * 		slot first moves this view to a private copy, so views behave like copies.
+ * 		getPayloadBytes() and getsACK() return copies, changing them does not change the packet;
+ * 		getPayloadLength(), getNumSACKBlocks(), encode() and the checksummers read the slot
+ * 		in place instead, so sending a view allocates nothing.
+ * 		release() gives the reference back; the view must not be used any more.
+ * */
+public class PacketView extends Packet {
+
+	private final PacketArena arena;
+	private int slot;
+
+	PacketView(PacketArena arena, int slot) {
+		this.arena = arena;
+		this.slot = slot;
+	}
+
+	/** another view of the same slot */
+	public PacketView share() {
+		arena.retain(slot);
+		return new PacketView(arena, slot);
+	}
+
+	public void release() {
+		arena.release(slot);
+		slot = -1;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	/* the slab of the slot and where the slot starts in it, for PacketCodec and the checksummers */
+	ByteBuffer slab() {
+		if (slot < 0) {
+			throw new IllegalStateException("Packet used after release");
+		}
+		return arena.slabOf(slot);
+	}
+
+	int offset() {
+		return arena.offsetOf(slot);
+	}
+
+	/* copy the slot if another view shares it, before writing it */
+	private void prepareWrite() {
+		slab();
+		if (arena.getRefCount(slot) > 1) {
+			int copy = arena.copy(slot);
+			arena.release(slot);
+			slot = copy;
+		}
+	}
+
+	private void setFlagBit(short flag, boolean value) {
+		prepareWrite();
+		short flags = PacketCodec.getFlags(slab(), offset());
+		PacketCodec.setFlags(slab(), offset(), (short) (value ? flags | flag : flags & ~flag));
+	}
+
+	/* rewrite the whole slot when the layout changes */
+	private void rewrite(Packet p) {
+		prepareWrite();
+		arena.store(slot, p);
+	}
+
+	public boolean setSeqnum(int n) {
+		prepareWrite();
+		PacketCodec.setSeqnum(slab(), offset(), n);
+		return true;
+	}
+
+	public boolean setAcknum(int n) {
+		prepareWrite();
+		PacketCodec.setAcknum(slab(), offset(), n);
+		return true;
+	}
+
+	public boolean setChecksum(long n) {
+		prepareWrite();
+		PacketCodec.setChecksum(slab(), offset(), n);
+		return true;
+	}
+
+	public boolean setPayload(byte[] newPayload) {
+		Packet p = arena.load(slot);
+		boolean result = p.setPayload(newPayload);
+		rewrite(p);
+		return result;
+	}
+
+	public int getSeqnum() {
+		return PacketCodec.getSeqnum(slab(), offset());
+	}
+
+	public int getAcknum() {
+		return PacketCodec.getAcknum(slab(), offset());
+	}
+
+	public long getChecksum() {
+		return PacketCodec.getChecksum(slab(), offset());
+	}
+
+	public String getPayload() {
+		byte[] payload = getPayloadBytes();
+		return payload == null ? null : new String(payload, StandardCharsets.ISO_8859_1);
+	}
+
+	public byte[] getPayloadBytes() {
+		return PacketCodec.getPayload(slab(), offset());
+	}
+
+	public int getPayloadLength() {
+		return PacketCodec.getPayloadLength(slab(), offset());
+	}
+
+	public int getNumSACKBlocks() {
+		return PacketCodec.getNumSACK(slab(), offset());
+	}
+
+	/**
+	 * Write the packet at the position of buffer like PacketCodec.encode(), copying the slot
+	 * as it is apart from the flag, which belongs to the view.
+	 * */
+	void encode(ByteBuffer buffer) {
+		int size = PacketCodec.encodedSize(this);
+		int start = buffer.position();
+		buffer.put(start, slab(), offset(), size);
+		buffer.position(start + size);
+
+		short flags = PacketCodec.getFlags(buffer, start);
+		PacketCodec.setFlags(buffer, start, (short) (isFlag() ? flags | PacketCodec.FLAG_SACK : flags & ~PacketCodec.FLAG_SACK));
+	}
+
+	public String toString() {
+		if (slot < 0) {
+			return "released packet view";
+		}
+		return ("seqnum: " + getSeqnum() + "  acknum: " + getAcknum() + "  checksum: " + getChecksum() + "  payload: "
+				+ getPayload());
+	}
+
+	public SelectiveAck getsACK() {
+		return PacketCodec.getSACK(slab(), offset());
+	}
+
+	public void setsACK(SelectiveAck sACK) {
+		Packet p = arena.load(slot);
+		p.setsACK(sACK);
+		rewrite(p);
+	}
+
+	public double getSendTime() {
+		return PacketCodec.getSendTime(slab(), offset());
+	}
+
+	public void setSendTime(double sendTime) {
+		prepareWrite();
+		PacketCodec.setSendTime(slab(), offset(), sendTime);
+	}
+
+	public boolean isRetransmitted() {
+		return (PacketCodec.getFlags(slab(), offset()) & PacketCodec.FLAG_RETRANSMITTED) != 0;
+	}
+
+	public void setRetransmitted(boolean isRetransmitted) {
+		setFlagBit(PacketCodec.FLAG_RETRANSMITTED, isRetransmitted);
+	}
+}
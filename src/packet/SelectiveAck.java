@@ -0,0 +1,259 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+import util.SequenceSpace;
+
+/**
+ * @author Phoenix TAN
+ * @description A selective acknowledgement of the packets received after a cumulative ACK.
+ * 		The packets are kept as a bitmap of the sequence numbers following the cumulative ACK,
+ * 		so add() and contains() are O(1) however many packets are acknowledged.
+ * 		The bitmap grows up to the last packet acknowledged, at most MAX_SPAN after the cumulative ACK.
+ * 		Sequence numbers wrap around at modulus, see SequenceSpace; 0 stands for the 32-bit space.
+ * 		On the wire the bitmap goes as at most MAX_BLOCKS range blocks, like the TCP SACK option
+ * 		(RFC 2018): the left edge of each run of received packets and the sequence number
+ * 		just after it, in sequence order. Runs past MAX_BLOCKS are not sent, and contains()
+ * 		leaves them out too, so a SelectiveAck acknowledges the same packets whether it is
+ * 		passed on as an object or encoded, and the checksum covers all of them.
+ * 		Once in a packet, a SelectiveAck is shared by the copies of the packet, do not modify it.
+ * */
+public class SelectiveAck {
+
+	public static final int MAX_BLOCKS = 4;
+	/** how far after the cumulative ACK a packet can be acknowledged, which keeps the bitmap within 512 KiB */
+	public static final int MAX_SPAN = 1 << 22;
+
+	private final int cumulativeAck;
+	private final SequenceSpace space;
+	/** bit i is sequence number cumulativeAck + 1 + i */
+	private long[] bitmap;
+
+	/** left and right edges of the blocks, computed when needed */
+	private int[] blocks;
+	private int numBlocks;
+	/** the offset after the last block, the bits from it on are not sent */
+	private int blocksEnd;
+	private boolean blocksValid;
+
+	/**
+	 * @param modulus where sequence numbers wrap around, 0 for the 32-bit space
+	 * */
+	public SelectiveAck(int cumulativeAck, int modulus) {
+		this(cumulativeAck, SequenceSpace.of(modulus));
+	}
+
+	public SelectiveAck(int cumulativeAck, SequenceSpace space) {
+		this.cumulativeAck = cumulativeAck;
+		this.space = space;
+		bitmap = new long[1];
+		blocks = new int[2 * MAX_BLOCKS];
+		numBlocks = 0;
+		blocksEnd = 0;
+		blocksValid = true;
+	}
+
+	public int getCumulativeAck() {
+		return cumulativeAck;
+	}
+
+	/** the modulus as it goes on the wire, 0 for the 32-bit space */
+	public int getModulus() {
+		return space.getEncodedModulus();
+	}
+
+	public SequenceSpace getSequenceSpace() {
+		return space;
+	}
+
+	/**
+	 * Acknowledge seqNum. Returns false for the cumulative ACK itself, which is already acknowledged.
+	 * */
+	public boolean add(int seqNum) {
+		int offset = offsetOf(seqNum);
+		if (offset < 0) {
+			return false;
+		}
+		if (offset >= MAX_SPAN) {
+			throw new IllegalArgumentException("Sequence number " + seqNum + " is more than " + MAX_SPAN
+					+ " after the cumulative ACK " + cumulativeAck);
+		}
+		if (offset >>> 6 >= bitmap.length) {
+			bitmap = Arrays.copyOf(bitmap, Math.max(2 * bitmap.length, (offset >>> 6) + 1));
+		}
+		bitmap[offset >>> 6] |= 1L << offset;
+		blocksValid = false;
+		return true;
+	}
+
+	/** true if seqNum is in one of the blocks that are sent, see getNumBlocks() */
+	public boolean contains(int seqNum) {
+		computeBlocks();
+		int offset = offsetOf(seqNum);
+		return offset >= 0 && offset < blocksEnd && (bitmap[offset >>> 6] & (1L << offset)) != 0;
+	}
+
+	/* position of seqNum in the bitmap, -1 for the cumulative ACK */
+	private int offsetOf(int seqNum) {
+		long distance = space.distance(cumulativeAck, seqNum);
+		return (int) Math.min(distance - 1, Integer.MAX_VALUE);
+	}
+
+	public int getNumBlocks() {
+		computeBlocks();
+		return numBlocks;
+	}
+
+	/** the first sequence number of block i */
+	public int getLeftEdge(int i) {
+		computeBlocks();
+		return blocks[2 * i];
+	}
+
+	/** the sequence number following the last one of block i */
+	public int getRightEdge(int i) {
+		computeBlocks();
+		return blocks[2 * i + 1];
+	}
+
+	/* find the first MAX_BLOCKS runs of set bits */
+	private void computeBlocks() {
+		if (blocksValid) {
+			return;
+		}
+		numBlocks = 0;
+		blocksEnd = 0;
+		int offset = nextBit(0, true);
+		while (offset >= 0 && numBlocks < MAX_BLOCKS) {
+			int end = nextBit(offset, false);
+			blocks[2 * numBlocks] = seqNumOf(offset);
+			blocks[2 * numBlocks + 1] = seqNumOf(end);
+			numBlocks++;
+			blocksEnd = end;
+			offset = nextBit(end, true);
+		}
+		blocksValid = true;
+	}
+
+	/*
+	 * the first offset from from on whose bit is set (or clear), -1 if there is none (or the end:
+	 * modulus - 1, where the space wraps around to the cumulative ACK, or the end of the bitmap)
+	 * */
+	private int nextBit(int from, boolean set) {
+		int limit = (int) Math.min(space.getModulus() - 1, (long) bitmap.length << 6);
+		int word = from >>> 6;
+		if (from >= limit) {
+			return set ? -1 : limit;
+		}
+		long bits = (set ? bitmap[word] : ~bitmap[word]) & (-1L << from);
+		while (true) {
+			if (bits != 0) {
+				int offset = (word << 6) + Long.numberOfTrailingZeros(bits);
+				if (offset >= limit) {
+					break;
+				}
+				return offset;
+			}
+			if (++word == bitmap.length) {
+				break;
+			}
+			bits = set ? bitmap[word] : ~bitmap[word];
+		}
+		return set ? -1 : limit;
+	}
+
+	private int seqNumOf(int offset) {
+		return space.add(cumulativeAck, 1L + offset);
+	}
+
+	/** the number of bytes encode() writes */
+	public int encodedSize() {
+		return encodedSize(getNumBlocks());
+	}
+
+	/** the cumulative ACK and modulus, then a left and right edge per block */
+	public static int encodedSize(int numBlocks) {
+		return 2 * Integer.BYTES + numBlocks * 2 * Integer.BYTES;
+	}
+
+	/**
+	 * Write the blocks at the position of buffer, see PacketCodec for where they go.
+	 * */
+	public void encode(ByteBuffer buffer) {
+		computeBlocks();
+		buffer.putInt(cumulativeAck);
+		buffer.putInt(getModulus());
+		for (int i = 0; i < 2 * numBlocks; i++) {
+			buffer.putInt(blocks[i]);
+		}
+	}
+
+	/**
+	 * Read numBlocks blocks at the position of buffer.
+	 * */
+	public static SelectiveAck decode(ByteBuffer buffer, int numBlocks) {
+		SelectiveAck sack = new SelectiveAck(buffer.getInt(), buffer.getInt());
+		for (int i = 0; i < numBlocks; i++) {
+			int left = buffer.getInt();
+			int right = buffer.getInt();
+			for (int seqNum = left; seqNum != right; seqNum = sack.space.next(seqNum)) {
+				sack.add(seqNum);
+			}
+		}
+		return sack;
+	}
+
+	/**
+	 * True if the numBlocks blocks at offset in buffer can be decoded: a cumulative ACK and edges
+	 * in the sequence space, and blocks that start after the cumulative ACK and end within MAX_SPAN of it.
+	 * A frame corrupted on the way may break any of them.
+	 * */
+	public static boolean isWellFormed(ByteBuffer buffer, int offset, int numBlocks) {
+		SequenceSpace space = SequenceSpace.of(buffer.getInt(offset + Integer.BYTES));
+		int cumulativeAck = buffer.getInt(offset);
+		if (!space.isValid(cumulativeAck)) {
+			return false;
+		}
+		for (int i = 0; i < numBlocks; i++) {
+			int left = buffer.getInt(offset + (2 + 2 * i) * Integer.BYTES);
+			int right = buffer.getInt(offset + (3 + 2 * i) * Integer.BYTES);
+			if (!space.isValid(left) || !space.isValid(right)) {
+				return false;
+			}
+			long start = space.distance(cumulativeAck, left);
+			if (start == 0 || start - 1 + space.distance(left, right) > MAX_SPAN) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add the wire format of the blocks to a checksum, without building it.
+	 * */
+	public void updateChecksum(Checksum checksum) {
+		computeBlocks();
+		updateInt(checksum, cumulativeAck);
+		updateInt(checksum, getModulus());
+		for (int i = 0; i < 2 * numBlocks; i++) {
+			updateInt(checksum, blocks[i]);
+		}
+	}
+
+	private static void updateInt(Checksum checksum, int n) {
+		checksum.update(n >>> 24);
+		checksum.update(n >>> 16);
+		checksum.update(n >>> 8);
+		checksum.update(n);
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("ack: " + cumulativeAck + "  sack:");
+		for (int i = 0; i < getNumBlocks(); i++) {
+			sb.append(" [" + getLeftEdge(i) + ", " + getRightEdge(i) + ")");
+		}
+		return sb.toString();
+	}
+}
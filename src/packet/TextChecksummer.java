@@ -0,0 +1,73 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * @author Phoenix TAN
+ * @description The checksum both simulators used to compute: a CRC32 over the decimal text
+ * 		of seqnum + acknum (their sum), then the SACK and the payload.
+ * 		Kept to compare against; the sum makes it miss errors that keep seqnum + acknum the same.
+ * 		It reproduces the checksums of older runs for packets without a SACK, i.e. data packets
+ * 		and cumulative ACKs, only: the SACK is now hashed from SelectiveAck, not from the text
+ * 		of the list it used to be, so runs that send SACK packets check differently.
+ * */
+public class TextChecksummer implements Checksummer {
+
+	private final CRC32 crc32;
+
+	public TextChecksummer() {
+		crc32 = new CRC32();
+	}
+
+	public long checksum(Packet packet) {
+		crc32.reset();
+
+		byte[] bytes = String.valueOf(packet.getSeqnum() + packet.getAcknum()).getBytes();
+		crc32.update(bytes, 0, bytes.length);
+
+		if (packet instanceof PacketView) {
+			return checksumSlot((PacketView) packet);
+		}
+
+		SelectiveAck sACK = packet.getsACK();
+		if (packet.isFlag() && sACK != null) {
+			sACK.updateChecksum(crc32);
+		}
+
+		byte[] payload = packet.getPayloadBytes();
+		if (payload != null) {
+			crc32.update(payload, 0, payload.length);
+		}
+		return crc32.getValue();
+	}
+
+	/* The SACK and the payload from the slot of a view, the SACK in the bytes SelectiveAck.updateChecksum() uses */
+	private long checksumSlot(PacketView view) {
+		ByteBuffer slab = view.slab();
+		int offset = view.offset();
+
+		int sackSize = PacketCodec.getSACKSize(slab, offset);
+		if (view.isFlag() && sackSize > 0) {
+			update(slab, offset + PacketCodec.HEADER_SIZE, sackSize);
+		}
+		int length = PacketCodec.getPayloadLength(slab, offset);
+		if (length > 0) {
+			update(slab, offset + PacketCodec.HEADER_SIZE + sackSize, length);
+		}
+		return crc32.getValue();
+	}
+
+	private void update(ByteBuffer slab, int from, int length) {
+		slab.clear();
+		slab.position(from);
+		slab.limit(from + length);
+		crc32.update(slab);
+		// the views of the slab read it at absolute indexes, up to its limit
+		slab.clear();
+	}
+
+	public String toString() {
+		return "Text CRC32";
+	}
+}
@@ -0,0 +1,108 @@
+package packet;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * @author Phoenix TAN
+ * @description A Checksummer over the binary fields of a packet with one of the checksums
+ * 		of java.util.zip, reused from packet to packet. The fields go in network byte order:
+ * 		seqnum and acknum as ints, then the SACK in its wire format, then the payload bytes.
+ * 		CRC32C and CRC32 are intrinsics of the JVM on most hardware.
+ * 		The fields of a PacketView are read from its slot, where they are laid out the same way.
+ * */
+public class ZipChecksummer implements Checksummer {
+
+	private final Checksum checksum;
+	/** seqnum, acknum and the largest SACK, laid out before a single update() */
+	private final byte[] header;
+
+	public ZipChecksummer(Checksum checksum) {
+		this.checksum = checksum;
+		header = new byte[2 * Integer.BYTES + SelectiveAck.encodedSize(SelectiveAck.MAX_BLOCKS)];
+	}
+
+	public static ZipChecksummer crc32c() {
+		return new ZipChecksummer(new CRC32C());
+	}
+
+	public static ZipChecksummer crc32() {
+		return new ZipChecksummer(new CRC32());
+	}
+
+	public static ZipChecksummer adler32() {
+		return new ZipChecksummer(new Adler32());
+	}
+
+	public long checksum(Packet packet) {
+		if (packet instanceof PacketView) {
+			return checksum((PacketView) packet);
+		}
+		checksum.reset();
+
+		putInt(header, 0, packet.getSeqnum());
+		putInt(header, 4, packet.getAcknum());
+		int length = 8;
+
+		// the same bytes as SelectiveAck.updateChecksum(), in one update() instead of one per byte
+		SelectiveAck sACK = packet.getsACK();
+		if (packet.isFlag() && sACK != null) {
+			putInt(header, length, sACK.getCumulativeAck());
+			putInt(header, length + 4, sACK.getModulus());
+			length += 8;
+			for (int i = 0; i < sACK.getNumBlocks(); i++) {
+				putInt(header, length, sACK.getLeftEdge(i));
+				putInt(header, length + 4, sACK.getRightEdge(i));
+				length += 8;
+			}
+		}
+		checksum.update(header, 0, length);
+
+		byte[] payload = packet.getPayloadBytes();
+		if (payload != null) {
+			checksum.update(payload, 0, payload.length);
+		}
+		return checksum.getValue();
+	}
+
+	/* The same bytes from the slot of a view: seqnum and acknum start its header, the SACK and the payload follow it */
+	private long checksum(PacketView view) {
+		checksum.reset();
+		ByteBuffer slab = view.slab();
+		int offset = view.offset();
+
+		update(slab, offset, 2 * Integer.BYTES);
+		int sackSize = PacketCodec.getSACKSize(slab, offset);
+		if (view.isFlag() && sackSize > 0) {
+			update(slab, offset + PacketCodec.HEADER_SIZE, sackSize);
+		}
+		int length = PacketCodec.getPayloadLength(slab, offset);
+		if (length > 0) {
+			update(slab, offset + PacketCodec.HEADER_SIZE + sackSize, length);
+		}
+		return checksum.getValue();
+	}
+
+	private void update(ByteBuffer slab, int from, int length) {
+		slab.clear();
+		slab.position(from);
+		slab.limit(from + length);
+		checksum.update(slab);
+		// the views of the slab read it at absolute indexes, up to its limit
+		slab.clear();
+	}
+
+	private static void putInt(byte[] bytes, int offset, int n) {
+		bytes[offset] = (byte) (n >>> 24);
+		bytes[offset + 1] = (byte) (n >>> 16);
+		bytes[offset + 2] = (byte) (n >>> 8);
+		bytes[offset + 3] = (byte) n;
+	}
+
+	public String toString() {
+		return checksum.getClass().getSimpleName();
+	}
+}
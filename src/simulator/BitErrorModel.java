@@ -0,0 +1,90 @@
+package simulator;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * @author Phoenix TAN
+ * @description Flips bits of the frames sent on a link with a given bit error rate, so that
+ * 		longer frames are corrupted more often. Errors come in bursts of consecutive flipped bits,
+ * 		of geometric length with mean meanBurstLength (1 for independent bit errors), and bursts
+ * 		start often enough to keep the overall rate of flipped bits at the bit error rate.
+ * 		The gaps between bursts are drawn directly (geometric), so the cost is per error,
+ * 		not per bit, and they run on from one frame to the next as on a continuous link.
+ * */
+public class BitErrorModel {
+
+	private final double bitErrorRate;
+	private final double meanBurstLength;
+	private final SplittableRandom random;
+
+	/** log(1 - p) of the start of a burst and of its continuation, for the geometric draws */
+	private final double logNoBurst;
+	private final double logBurstEnds;
+
+	/** bits still to go before the next burst */
+	private long gap;
+
+	public BitErrorModel(double bitErrorRate, double meanBurstLength, long seed) {
+		if (bitErrorRate < 0 || bitErrorRate > 1) {
+			throw new IllegalArgumentException("Bit error rate must be from 0 to 1: " + bitErrorRate);
+		}
+		if (meanBurstLength < 1) {
+			throw new IllegalArgumentException("Mean burst length must be at least 1: " + meanBurstLength);
+		}
+		this.bitErrorRate = bitErrorRate;
+		this.meanBurstLength = meanBurstLength;
+		random = new SplittableRandom(seed);
+		logNoBurst = Math.log1p(-Math.min(1, bitErrorRate / meanBurstLength));
+		logBurstEnds = Math.log1p(-1 / meanBurstLength);
+		gap = nextGap();
+	}
+
+	/**
+	 * Flip bits of the frame from its position to its limit, return the number of bits flipped.
+	 * */
+	public int corrupt(ByteBuffer frame) {
+		int start = frame.position();
+		long numBits = 8L * frame.remaining();
+		int flipped = 0;
+
+		long bit = gap;
+		while (bit < numBits) {
+			long end = Math.min(numBits, bit + nextBurstLength());
+			for (; bit < end; bit++) {
+				int index = start + (int) (bit >>> 3);
+				frame.put(index, (byte) (frame.get(index) ^ (0x80 >>> (bit & 7))));
+				flipped++;
+			}
+			bit += nextGap();
+		}
+		gap = bit - numBits;
+		return flipped;
+	}
+
+	/** bits without error before the next burst */
+	private long nextGap() {
+		if (bitErrorRate == 0) {
+			return Long.MAX_VALUE / 2;
+		}
+		if (logNoBurst == Double.NEGATIVE_INFINITY) {
+			return 0;
+		}
+		return (long) (Math.log(1 - random.nextDouble()) / logNoBurst);
+	}
+
+	private long nextBurstLength() {
+		if (meanBurstLength == 1) {
+			return 1;
+		}
+		return 1 + (long) (Math.log(1 - random.nextDouble()) / logBurstEnds);
+	}
+
+	public double getBitErrorRate() {
+		return bitErrorRate;
+	}
+
+	public double getMeanBurstLength() {
+		return meanBurstLength;
+	}
+}
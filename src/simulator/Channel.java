@@ -0,0 +1,170 @@
+package simulator;
+
+/**
+ * @author Phoenix TAN
+ * @description One direction of the medium, from A to B or from B to A.
+ * 		The medium cannot reorder, so a packet must arrive after the last packet
+ * 		still in flight in the same direction. The channel remembers when that
+ * 		packet arrives, which makes toLayer3() O(1) instead of scanning the event list.
+ * 		It also keeps the statistics of its direction.
+ * */
+public class Channel {
+
+	private int from;
+	private int to;
+
+	/** arrival time of the last packet scheduled on this channel */
+	private double lastArrivalTime;
+	/** packets scheduled but not arrived yet */
+	private int inFlight;
+
+	/** statistics */
+	private int numSent;
+	private long numBytesSent;
+	private long numBytesSaved;
+	private long compressionNanos;
+	private int numLost;
+	private int numCorrupted;
+	/** corrupted packets whose checksum still matched, and frames too corrupted to parse */
+	private int numUndetected;
+	private int numMalformed;
+	private int numDelivered;
+
+	public Channel(int from, int to) {
+		this.from = from;
+		this.to = to;
+		lastArrivalTime = 0;
+		inFlight = 0;
+		numSent = 0;
+		numBytesSent = 0;
+		numBytesSaved = 0;
+		compressionNanos = 0;
+		numLost = 0;
+		numCorrupted = 0;
+		numUndetected = 0;
+		numMalformed = 0;
+		numDelivered = 0;
+	}
+
+	/**
+	 * The arrival time of the last packet in flight, 0 if the channel is idle.
+	 * */
+	public double getLastArrivalTime() {
+		if ( inFlight == 0 ) {
+			return 0;
+		}
+		return lastArrivalTime;
+	}
+
+	/** a packet is sent into this channel */
+	public void send() {
+		numSent++;
+	}
+
+	/** a packet of numBytes bytes in its wire format is sent into this channel */
+	public void send(int numBytes) {
+		numSent++;
+		numBytesSent += numBytes;
+	}
+
+	/** the packet just sent is compressed, numBytesSaved bytes smaller, in nanos nanoseconds */
+	public void compress(int numBytesSaved, long nanos) {
+		numBytesSent -= numBytesSaved;
+		this.numBytesSaved += numBytesSaved;
+		compressionNanos += nanos;
+	}
+
+	/** a packet sent on this channel is decompressed at the other side in nanos nanoseconds */
+	public void decompress(long nanos) {
+		compressionNanos += nanos;
+	}
+
+	/** the packet just sent is lost */
+	public void lose() {
+		numLost++;
+	}
+
+	/** the packet just sent is corrupted */
+	public void corrupt() {
+		numCorrupted++;
+	}
+
+	/** the corrupted packet just sent still has a matching checksum */
+	public void corruptUndetected() {
+		numUndetected++;
+	}
+
+	/** a packet sent on this channel arrives too corrupted to parse and is dropped */
+	public void dropMalformed() {
+		numMalformed++;
+	}
+
+	/** the packet just sent will arrive at arrivalTime */
+	public void schedule(double arrivalTime) {
+		lastArrivalTime = arrivalTime;
+		inFlight++;
+	}
+
+	/** the oldest packet in flight arrives at the other side */
+	public void deliver() {
+		inFlight--;
+		numDelivered++;
+	}
+
+	public int getFrom() {
+		return from;
+	}
+
+	public int getTo() {
+		return to;
+	}
+
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	public int getNumSent() {
+		return numSent;
+	}
+
+	public long getNumBytesSent() {
+		return numBytesSent;
+	}
+
+	public long getNumBytesSaved() {
+		return numBytesSaved;
+	}
+
+	public long getCompressionNanos() {
+		return compressionNanos;
+	}
+
+	public int getNumLost() {
+		return numLost;
+	}
+
+	public int getNumCorrupted() {
+		return numCorrupted;
+	}
+
+	public void setNumCorrupted(int numCorrupted) {
+		this.numCorrupted = numCorrupted;
+	}
+
+	public int getNumUndetected() {
+		return numUndetected;
+	}
+
+	public int getNumMalformed() {
+		return numMalformed;
+	}
+
+	public int getNumDelivered() {
+		return numDelivered;
+	}
+
+	public String toString() {
+		return ("from: " + from + "  to: " + to + "  sent: " + numSent + " (" + numBytesSent + " bytes, " + numBytesSaved + " saved)  lost: " + numLost + "  corrupted: "
+				+ numCorrupted + " (" + numUndetected + " undetected, " + numMalformed + " malformed)  delivered: " + numDelivered + "  in flight: " + inFlight);
+	}
+}
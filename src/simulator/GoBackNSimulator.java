@@ -2,15 +2,11 @@ package simulator;
 
 import util.GoBackNReceiverQueue;
 import util.GoBackNSenderQueue;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.zip.CRC32;
-import java.util.zip.Checksum;
+import util.SequenceSpace;
 
 import packet.Message;
 import packet.Packet;
+import packet.SelectiveAck;
 
 
 /**
@@ -20,7 +16,10 @@ public class GoBackNSimulator extends NetworkSimulator {
     /**
      * Predefined Constants (static member variables):
      *
-     *   int MAXDATASIZE : the maximum size of the basic.Message data and
+     *   int MAXDATASIZE : the default size of the basic.Message data and
+     *                     basic.Packet payload, see setPayloadSize()
+     *
+     *   int MAX_PAYLOAD_SIZE : the maximum size of the basic.Message data and
      *                     basic.Packet payload
      *
      *   int A           : a predefined integer that represents entity A
@@ -30,14 +29,22 @@ public class GoBackNSimulator extends NetworkSimulator {
      *
      *  void stopTimer(int entity):
      *       Stops the timer running at "entity" [A or B]
-     *  void startTimer(int entity, double increment):
+     *  TimerHandle startTimer(int entity, double increment):
      *       Starts a timer running at "entity" [A or B], which will expire in
      *       "increment" time units, causing the interrupt handler to be
      *       called.  You should only call this with A.
+     *  TimerHandle restartTimer(int entity, double increment):
+     *       Same as stopTimer(entity) followed by startTimer(entity, increment),
+     *       but in O(1) and without warnings if the timer is not running.
+     *  void stopTimer(TimerHandle timer), TimerHandle restartTimer(TimerHandle timer, double increment):
+     *       Same, for the timer of a handle only; nothing is done if it has
+     *       expired or been stopped since.
      *  void toLayer3(int callingEntity, basic.Packet p)
      *       Puts the packet "p" into the network from "callingEntity" [A or B]
      *  void toLayer5(String dataSent)
      *       Passes "dataSent" up to layer 5
+     *  void toLayer5(byte[] dataSent)
+     *       Same, with the bytes of a payload
      *  double getTime()
      *       Returns the current time in the simulator.  Might be useful for
      *       debugging.
@@ -60,6 +67,8 @@ public class GoBackNSimulator extends NetworkSimulator {
      *          returns true on success, false otherwise
      *      String getData():
      *          returns the data contained in the message
+     *      byte[] getDataBytes():
+     *          returns the data itself as bytes, shared, not to be modified
      *  basic.Packet: Used to encapsulate a packet
      *    Constructors:
      *      basic.Packet (basic.Packet p):
@@ -93,6 +102,9 @@ public class GoBackNSimulator extends NetworkSimulator {
      *          returns the checksum of the basic.Packet
      *      int getPayload()
      *          returns the basic.Packet's payload
+     *      byte[] getPayloadBytes()
+     *          returns the payload itself as bytes, shared by the copies
+     *          of the packet, not to be modified
      *
      */
 
@@ -105,7 +117,8 @@ public class GoBackNSimulator extends NetworkSimulator {
     public static final int FirstSeqNo = 0;
     private int windowSize;
     private double retransmitInterval;
-    private int limitSeqNo;
+    /** the sequence numbers, see NetworkSimulator.setFullSequenceSpace() */
+    private SequenceSpace seqSpace;
 
     /**
      * Add any necessary class variables here.  Remember, you cannot use
@@ -117,9 +130,9 @@ public class GoBackNSimulator extends NetworkSimulator {
     private GoBackNReceiverQueue<Packet> receiverQueue;
     /** custom statistics */
     private int retransmissionsByA;
-    private double RTTSumTime;
-    private double accumulativeCommunicationStartTime;
-    private double accumulativeCommunicationEndTime;
+    private TimeSum RTTSumTime;
+    private TimeSum accumulativeCommunicationStartTime;
+    private TimeSum accumulativeCommunicationEndTime;
     private int RTTTotalPacketNum = 0;
 
     /**
@@ -127,23 +140,10 @@ public class GoBackNSimulator extends NetworkSimulator {
      */
 
     /**
-     * get checksum of a packet by java.util.zip Checksum and CRC32
+     * get checksum of a packet by the checksummer of the simulator, see setChecksummer()
      * */
     private long getChecksumOfPacket(Packet packet) {
-
-        String text = null;
-        if(packet.isFlag()){
-            text = packet.getSeqnum() + packet.getAcknum() + Arrays.toString(packet.getsACK().toArray()) + packet.getPayload();
-        }else{
-            text = packet.getSeqnum() + packet.getAcknum() + packet.getPayload();
-        }
-
-        byte[] bytes = text.getBytes();
-
-        Checksum crc32 = new CRC32();
-        crc32.update(bytes, 0, bytes.length);
-
-        return crc32.getValue();
+        return checksum(packet);
     }
 
     // This is the constructor.  Don't touch!
@@ -157,17 +157,16 @@ public class GoBackNSimulator extends NetworkSimulator {
                                    double delay) {
         super(numMessages, loss, corrupt, avgDelay, trace, seed);
         windowSize = winsize;
-        limitSeqNo = winsize * 2; // < this value
         retransmitInterval = delay;
 
         /**
          *  custom statistics
          */
         retransmissionsByA = 0;
-        RTTSumTime = 0;
+        RTTSumTime = newTimeSum();
         RTTTotalPacketNum = 0;
-        accumulativeCommunicationStartTime = 0;
-        accumulativeCommunicationEndTime = 0;
+        accumulativeCommunicationStartTime = newTimeSum();
+        accumulativeCommunicationEndTime = newTimeSum();
     }
 
     /** This routine will be called whenever the upper layer at the sender [A]
@@ -180,55 +179,56 @@ public class GoBackNSimulator extends NetworkSimulator {
             System.out.println("Calling aOutput()...");
         }
 
-        int senderTailSeqNum = 0;
-        int packetSeqNum = 0;
+        // number the new packet after the last one of the backlog, which may be beyond the window or spilled
+        int packetSeqNum = senderQueue.getNextSeqNum();
+        senderQueue.setNextSeqNum(seqSpace.next(packetSeqNum));
 
-        Packet tailPacket = senderQueue.getTailData();
-        if(tailPacket != null){
-            senderTailSeqNum = senderQueue.getTailData().getSeqnum();
-            packetSeqNum = (senderTailSeqNum + 1) < limitSeqNo ? (senderTailSeqNum + 1) : 0;
-        }else{
-            packetSeqNum = senderQueue.getCurSeqNum();
-        }
         // handle new message from layer 5
-        Packet newPacket = new Packet(packetSeqNum, 0, 0, new String(message.getData()));
+        Packet newPacket = new Packet(packetSeqNum, 0, 0, message.getDataBytes());
         newPacket.setChecksum(getChecksumOfPacket(newPacket));
-        senderQueue.add(newPacket);
+        senderQueue.add(keep(newPacket));
         if (traceLevel > 2) {
             System.out.println("[A] Make a new packet, add to queue, seq = " + packetSeqNum);
         }
 
         // send packet
-        int senderCurSeqNum = senderQueue.getCurSeqNum();
-        int baseSeqNum = senderQueue.getFirst().getSeqnum();
-        if (senderCurSeqNum < baseSeqNum + windowSize) {
-
-            Packet packet = getPacketBySeqNum(senderQueue, senderCurSeqNum);
-            if (packet == null){
-                System.out.println("aOutput Exception: want to send a packet but there are no packets");
-            }
-            packet.setSendTime(getTime());
-            accumulativeCommunicationStartTime += getTime();
-            toLayer3(0, new Packet(packet));
-            if (senderCurSeqNum == baseSeqNum){
-                startTimer(0, retransmitInterval);
-            }
-            senderCurSeqNum = (senderCurSeqNum + 1) < limitSeqNo ? (senderCurSeqNum + 1) : 0;
-            senderQueue.setCurSeqNum(senderCurSeqNum);
+        if (sendWindow()) {
+            startTimer(0, retransmitInterval);
         }
         if (traceLevel > 2) {
-            System.out.println("[A] Next packet seq = " + senderCurSeqNum);
+            System.out.println("[A] Next packet seq = " + senderQueue.getCurSeqNum());
         }
     }
 
-    private Packet getPacketBySeqNum(GoBackNSenderQueue<Packet> senderQueue, int senderCurSeqNum) {
-        for(int i = 0; i < senderQueue.getTailIndex(); i++){
-            Packet packet = senderQueue.getDatabyIndex(i);
-            if(packet.getSeqnum() == senderCurSeqNum){
-                return packet;
-            }
+    /**
+     * Send the packets of the window that have not been sent yet, from curSeqNum on.
+     * The packets of the window have consecutive sequence numbers from its base,
+     * so the one of curSeqNum is at its distance from the base.
+     * Returns true if the first packet sent is the window base, whose timer must be started.
+     * */
+    private boolean sendWindow() {
+        Packet first = senderQueue.getFirst();
+        if (first == null) {
+            return false;
         }
-        return null;
+        int baseSeqNum = first.getSeqnum();
+        int senderCurSeqNum = senderQueue.getCurSeqNum();
+        boolean sentBase = senderCurSeqNum == baseSeqNum;
+        boolean sent = false;
+
+        long offset = seqSpace.distance(baseSeqNum, senderCurSeqNum);
+        while (offset < senderQueue.getTailIndex()) {
+            Packet packet = senderQueue.getDatabyIndex((int) offset);
+            packet.setSendTime(getTime());
+            accumulativeCommunicationStartTime.add(getTime());
+            toLayer3(0, packet);
+            sent = true;
+
+            senderCurSeqNum = seqSpace.next(senderCurSeqNum);
+            offset++;
+        }
+        senderQueue.setCurSeqNum(senderCurSeqNum);
+        return sent && sentBase;
     }
 
     /**
@@ -255,7 +255,7 @@ public class GoBackNSimulator extends NetworkSimulator {
                 if (traceLevel > 2) {
                     System.out.println("[A] SACK received ");
                 }
-                List<Integer> sACK = packet.getsACK();
+                SelectiveAck sACK = packet.getsACK();
                 // retransmission
                 int baseIndex = 0;
                 int tailIndex = senderQueue.getTailIndex();
@@ -263,10 +263,10 @@ public class GoBackNSimulator extends NetworkSimulator {
                 for(int i = baseIndex; i < tailIndex; i++){
                     Packet reTransPacket = senderQueue.getDatabyIndex(i);
                     int seqNum = reTransPacket.getSeqnum();
-                    if(!findPacketInSACK(seqNum, sACK)){ // baseSeqNum < SACKSeqNum
+                    if(!sACK.contains(seqNum)){ // baseSeqNum < SACKSeqNum
                         // resend i
                         reTransPacket.setRetransmitted(true);
-                        toLayer3(0, new Packet(reTransPacket));
+                        toLayer3(0, reTransPacket);
                         retransmissionsByA++;
                     }
                 }
@@ -286,8 +286,17 @@ public class GoBackNSimulator extends NetworkSimulator {
                     System.out.println("[A] baseSeqNum = " + baseSeqNum + ", ackSeqNum = " + ackSeqNum + ", curSeqNum = " + curSeqNum);
                 }
 
-                if(ackSeqNum >= baseSeqNum){
+                int numAcked = senderQueue.getNumAcked(ackSeqNum, baseSeqNum);
+                if(numAcked > 0){
+                    for(int i = 0; i < numAcked; i++){
+                        Packet acked = senderQueue.getDatabyIndex(i);
+                        if(acked != null){
+                            drop(acked);
+                        }
+                    }
                     senderQueue.slide(ackSeqNum, baseSeqNum);
+                    // send the packets of the backlog that the window slid over
+                    sendWindow();
                     curSeqNum = senderQueue.getCurSeqNum();
                     if (traceLevel > 2) {
                         System.out.println("[A] Sliding Window");
@@ -295,22 +304,20 @@ public class GoBackNSimulator extends NetworkSimulator {
                     // statistic
                     if(!packet.isRetransmitted()){
                         RTTTotalPacketNum++;
-                        RTTSumTime += (getTime() - packet.getSendTime());
+                        RTTSumTime.add(getTime() - packet.getSendTime());
+                    }
+                    accumulativeCommunicationEndTime.add(getTime(), numAcked);
+
+                    // if there are still additional transmitted but not yet acknowledged packets, the timer is restarted,
+                    // otherwise base == nextSeqNum, stop the timer
+                    if(!senderQueue.isWindowEmpty()){
+                        restartTimer(0, retransmitInterval);
+                    }else{
+                        stopTimer(0);
                     }
-                    accumulativeCommunicationEndTime += getTime() * (ackSeqNum - baseSeqNum + 1);
-
-                    // if base == nextSeqNum, stop the timer
-//                    baseSeqNum = ackSeqNum + 1;
-//                    if(baseSeqNum == curSeqNum || baseSeqNum == windowSize){
-//
-//                    }
-                    stopTimer(0);
                 }
-                // else, it may be a duplicate or a out of date ACK, do nothing
-
-
-                // if there are still additional transmitted but not yet acknowledged packets, the timer is restarted
-                if(!senderQueue.isWindowEmpty()){
+                // else, it may be a duplicate or a out of date ACK, keep the timer running
+                else if(!senderQueue.isWindowEmpty()){
                     startTimer(0, retransmitInterval);
                 }
             }
@@ -321,16 +328,6 @@ public class GoBackNSimulator extends NetworkSimulator {
         }
     }
 
-    private boolean findPacketInSACK(int seqNum, List<Integer> sACK) {
-        for(int i = 0; i < sACK.size(); i++){
-            int deliveredSeqNum = sACK.get(i);
-            if(seqNum == deliveredSeqNum){
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      *  This routine will be called when A's timer expires (thus generating a
      *      timer interrupt). You'll probably want to use this routine to control
@@ -358,7 +355,7 @@ public class GoBackNSimulator extends NetworkSimulator {
             Packet packet = senderQueue.getDatabyIndex(i);  // a packet may be lost
             packet.setRetransmitted(true);
             retransmissionsByA++;
-            toLayer3(0, new Packet(packet));
+            toLayer3(0, packet);
             if ( traceLevel > 2 ) {
                 System.out.println("[A] Resend packet: " + packet);
             }
@@ -374,7 +371,15 @@ public class GoBackNSimulator extends NetworkSimulator {
      *      of entity A).
      */
     protected void aInit() {
-        senderQueue = new GoBackNSenderQueue<Packet>(windowSize);
+        seqSpace = getSequenceSpace(windowSize);
+        senderQueue = new GoBackNSenderQueue<Packet>(windowSize, seqSpace);
+        senderQueue.setCapacity(getSendBufferCapacity());
+        spillBacklog(senderQueue);
+    }
+
+    @Override
+    protected boolean isSendBufferFull() {
+        return senderQueue.isBufferFull();
     }
 
 
@@ -391,46 +396,40 @@ public class GoBackNSimulator extends NetworkSimulator {
             System.out.println("Calling bInput()...");
         }
         // if not corrupted and in order
-        long checkSum = packet.getChecksum();
+        boolean notCorrupted = packet.getChecksum() == getChecksumOfPacket(packet);
         int expectedSeqNum = receiverQueue.getExpectedSeqNum();
         int pktSeqNum = packet.getSeqnum();
 
 
-        if(pktSeqNum == expectedSeqNum && checkSum == getChecksumOfPacket(packet)){
+        if(pktSeqNum == expectedSeqNum && notCorrupted){
             if ( traceLevel > 2 ) {
                 System.out.println("Packet received successfully, send ACK, Seq = " + expectedSeqNum);
             }
-            toLayer5(packet.getPayload());
-            receiverQueue.updateExpectedSeqArray();
-            int i = 0; pktSeqNum++;
-
-            if(!receiverQueue.isWindowEmpty()){
-                Packet pkt = receiverQueue.getDatabyIndex(i);
-                System.out.println("Find buffered packet: " + pkt);
-                while(pkt != null && pkt.getSeqnum() == pktSeqNum){
-                    toLayer5(pkt.getPayload());
-                    receiverQueue.removeFirst();
-                    i++;
-                    pktSeqNum++;expectedSeqNum++;
-                    pkt = receiverQueue.getDatabyIndex(i);
-                    receiverQueue.updateExpectedSeqArray();
-                    receiverQueue.updateTail();
+            toLayer5(packet.getPayloadBytes());
+            receiverQueue.removeFirst();
+
+            // deliver the buffered packets that follow it, in order
+            Packet pkt = receiverQueue.getFirst();
+            while(pkt != null){
+                if ( traceLevel > 2 ) {
+                    System.out.println("Deliver buffered packet: " + pkt);
                 }
+                toLayer5(pkt.getPayloadBytes());
+                expectedSeqNum = receiverQueue.getExpectedSeqNum();
+                receiverQueue.removeFirst();
+                pkt = receiverQueue.getFirst();
             }
             // send ACK
             Packet newPacket = new Packet(0, expectedSeqNum, 0);
             newPacket.setChecksum(getChecksumOfPacket(newPacket));
             newPacket.setSendTime(packet.getSendTime());
             newPacket.setRetransmitted(packet.isRetransmitted());
-            toLayer3(1, new Packet(newPacket));
-            expectedSeqNum = pktSeqNum == limitSeqNo ? 0 : pktSeqNum;
-            receiverQueue.setExpectedSeqNum(expectedSeqNum);
-           // receiverQueue.updateExpectedSeqArray();
+            toLayer3(1, newPacket);
             if ( traceLevel > 2 ) {
-                System.out.println("Update expected array, " + receiverQueue.getExpectedSeqNumArray().toString());
+                System.out.println("Expected seq = " + receiverQueue.getExpectedSeqNum());
             }
         }
-        else if(!receiverQueue.isExpected(pktSeqNum) && checkSum == getChecksumOfPacket(packet)){
+        else if(!receiverQueue.isExpected(pktSeqNum) && notCorrupted){
             if ( traceLevel > 2 ) {
                 System.out.println("Packet received, but duplicated, send ACK, Seq = " + pktSeqNum);
             }
@@ -441,23 +440,24 @@ public class GoBackNSimulator extends NetworkSimulator {
             newPacket.setRetransmitted(packet.isRetransmitted());
             toLayer3(1, newPacket);
         }
-        else if(checkSum == getChecksumOfPacket(packet)){
+        else if(notCorrupted){
             if ( traceLevel > 2 ) {
                 System.out.println("Packet received, but out of order, buffed packet, expectedSeq = " + expectedSeqNum + ", but packetSeq = " + pktSeqNum );
             }
-            // out of order, buffered
-            receiverQueue.add(packet);
+            // out of order, buffered unless it already is, the arrived packet is recycled after bInput() returns
+            if(!receiverQueue.contains(pktSeqNum)){
+                receiverQueue.add(pktSeqNum, new Packet(packet));
+            }
             // if SACK array is FULL
-            if(receiverQueue.isBufferFull()){
+            if(receiverQueue.size() >= ReceiverBufferSize){
                 // send a SACK packet
                 Packet newPacket = new Packet(0, 0, 0);
-                int newSeqNum = (expectedSeqNum == 0) ? (limitSeqNo - 1): (expectedSeqNum - 1);
+                int newSeqNum = seqSpace.previous(expectedSeqNum);
                 newPacket.setSeqnum(newSeqNum);
                 newPacket.setFlag(true);
-                List<Integer> SACK = new ArrayList<>();
-                for(int i = 0; i < ReceiverBufferSize; i++){
-                    int seqNum = receiverQueue.getDatabyIndex(i).getSeqnum();
-                    SACK.add(seqNum);
+                SelectiveAck SACK = new SelectiveAck(newSeqNum, seqSpace);
+                for(int i = receiverQueue.nextOccupied(0); i >= 0; i = receiverQueue.nextOccupied(i + 1)){
+                    SACK.add(receiverQueue.seqNumAt(i));
                 }
                 newPacket.setsACK(SACK);
                 newPacket.setChecksum(getChecksumOfPacket(newPacket));
@@ -480,13 +480,14 @@ public class GoBackNSimulator extends NetworkSimulator {
      *      of entity B).
      */
     protected void bInit() {
-        receiverQueue = new GoBackNReceiverQueue<Packet>(windowSize);
+        seqSpace = getSequenceSpace(windowSize);
+        receiverQueue = new GoBackNReceiverQueue<Packet>(windowSize, seqSpace);
     }
 
     // Use to print final statistics
     protected void Simulation_done() {
         String lineBreaker = System.lineSeparator();
-        int originPacketsTransmittedByA = getMaxMessages();
+        int originPacketsTransmittedByA = getNumOfOutputMessages();
         int totalPacketsTransmittedByA = getPacketsTransmittedByA();
         int nToLayer5 = getNtoLayer5();
         int ACKSentByB = getACKSentByB();
@@ -513,14 +514,14 @@ public class GoBackNSimulator extends NetworkSimulator {
          * Note that data packets that are ACKed by the
          * ACK of a subsequent packet are not part of this metric
          * */
-        double averageRTT = RTTSumTime / RTTTotalPacketNum;
+        double averageRTT = RTTSumTime.get() / RTTTotalPacketNum;
 
         /**
          * Average communication time:
          * Average time between sending an original data packet
          * and receiving its ACK, even if the data packet is retransmitted.
          * */
-        double averageCommunicationTime = (accumulativeCommunicationEndTime - accumulativeCommunicationStartTime) / originPacketsTransmittedByA;
+        double averageCommunicationTime = accumulativeCommunicationEndTime.minus(accumulativeCommunicationStartTime) / originPacketsTransmittedByA;
 
 
         /**
@@ -549,6 +550,16 @@ public class GoBackNSimulator extends NetworkSimulator {
         System.out.println("Number of lost packets: " + nLost);
         System.out.println("A corrupt: " + getACorrupt());
         System.out.println("B corrupt: " + getBCorrupt());
+        System.out.println("Payload size: " + getPayloadSize() + " bytes");
+        System.out.println("Messages delivered to layer 5 at B: " + getNumOfMessagesToLayer5());
+        System.out.println("Average message delay: " + String.format("%.3f", getAverageMessageDelay()));
+        System.out.println("Bytes delivered to layer 5 at B: " + getBytesToLayer5());
+        System.out.println("Goodput: " + String.format("%.3f", getGoodput()) + " bytes per time unit");
+        System.out.println("Bytes transmitted by A: " + getBytesTransmittedByA() + "  by B: " + getBytesTransmittedByB());
+        System.out.println("Bytes saved by compression: " + getBytesSavedByCompression() + " in " + String.format("%.3f", getCompressionTime()) + " ms");
+        System.out.println("Corruptions not detected by the checksum: " + getNumUndetectedCorruptions() + "  malformed frames dropped: " + getNumMalformedFrames());
+        System.out.println("Layer 5 blocked by a full send buffer: " + getNumSendBufferBlocks() + " times for " + String.format("%.3f", getSendBufferBlockedTime()) + " time units");
+        System.out.println("Packets spilled to disk: " + getNumSpilledPackets() + "  spill file size: " + getSpillFileSize() + " bytes");
         System.out.println("==================================================");
 
 
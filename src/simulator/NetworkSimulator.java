@@ -1,21 +1,41 @@
 package simulator;
 
+import packet.Checksummer;
+import packet.FrameCompressor;
+import packet.FramePool;
 import packet.Message;
+import packet.MessageCoalescer;
 import packet.Packet;
+import packet.PacketArena;
+import packet.PacketCodec;
+import packet.PacketPool;
+import packet.PacketSpillFile;
+import packet.PacketView;
+import packet.ZipChecksummer;
 import util.OSIRandom;
+import util.RingBufferQueue;
+import util.SequenceSpace;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import event.*;
 
 
 public abstract class NetworkSimulator {
 	/**
-	 * This constant controls the maximum size of the buffer in a basic.Message
-	 * and in a basic.Packet
+	 * This constant is the default size of the buffer in a basic.Message
+	 * and in a basic.Packet, see setPayloadSize()
 	 */
 	public static final int MAXDATASIZE = 20;
 
+	/**
+	 * The maximum size of the buffer in a basic.Message and in a basic.Packet, 64 KiB
+	 */
+	public static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+
 	/**
 	 * These constants are possible events
 	 */
@@ -36,6 +56,8 @@ public abstract class NetworkSimulator {
 	private double lossProb;
 	private double corruptProb;
 	private double avgMessageDelay;
+	/** bytes of data in every message from layer 5 */
+	private int payloadSize;
 
 	/**
 	 *  0 will turn this of
@@ -44,17 +66,66 @@ public abstract class NetworkSimulator {
 	 */
 	protected int traceLevel;
 	
-	/** basic.Event list for all events */
-	private EventList eventList;
+	/** the event loop, with A and B as its entities and the constants above as its event types */
+	private SimulatorKernel kernel;
+
+	/** the running timer of each entity, null if it is not running */
+	private Event[] timers;
+	/** the handle of the running timer of each entity, see TimerHandle */
+	private TimerHandle[] timerHandles;
+
+	/** the two directions of the medium, indexed by the sending entity */
+	private Channel[] channels;
+
+	/** send packets through the network in their wire format instead of as objects */
+	private boolean wireFormat;
+	private FramePool framePool;
+	/** compress the frames sent by each entity, null to send them as they are */
+	private FrameCompressor[] compressors;
+	/** flip bits of the frames sent by each entity, null for the legacy corruption model */
+	private BitErrorModel[] bitErrorModels;
+	/** a corrupted packet as its receiver will see it, to check its checksum */
+	private Packet inspected;
+
+	/** number packets in the 32-bit sequence space instead of modulo twice the window size */
+	private boolean fullSequenceSpace;
+
+	/** where protocols keep their packets, null to keep them on the heap */
+	private PacketArena packetArena;
+
+	/** the checksum the protocols put into their packets, one reusable instance */
+	private Checksummer checksummer;
+
+	/** coalesces the messages from layer 5 before aOutput(), null to pass them one by one */
+	private MessageCoalescer coalescer;
+	/** the longest a message waits in the coalescer, and the timer that flushes it */
+	private double maxCoalescingDelay;
+	private NamedTimer coalescingTimer;
+
+	/** the most packets A buffers before layer 5 is blocked, Integer.MAX_VALUE for no bound */
+	private int sendBufferCapacity;
+	/** when layer 5 was blocked by a full send buffer, -1 if it is not blocked, and the message it holds */
+	private double blockedSince;
+	private byte[] heldMessage;
+	private double blockedTime;
+	private int numBlocked;
+
+	/** the packets A keeps in memory before spilling its backlog to a file, 0 to keep them all */
+	private int spillHorizon;
+	private PacketSpillFile spillFile;
 	
 	/** file to write the data deliver from A to the layer 5 of B */
-	private FileWriter outFile;
+	private OutputStream outFile;
 
 	/** random number generator */
 	private OSIRandom rand;
+	private int seed;
 	
 	private int numOfMessages;
-	private double time;
+	/** messages handed to aOutput(), fewer than numOfMessages when they are coalesced */
+	private int numOfOutputMessages;
+	/** when each message came from layer 5, in order, to measure its delay to layer 5 at B */
+	private double[] messageTimes;
 	
 	/** statistics */
 	private int nToLayer3;
@@ -63,10 +134,9 @@ public abstract class NetworkSimulator {
 	
 	/** custom statistics */
 	private int nToLayer5;
-	private int packetsTransmittedByA;
-	private int ACKSentByB;
-	private int ACorrupt;
-	private int BCorrupt;
+	private int nMessagesToLayer5;
+	private long nBytesToLayer5;
+	private double messageDelaySum;
 	
 	
 	protected abstract void aOutput(Message message);
@@ -90,16 +160,39 @@ public abstract class NetworkSimulator {
 		lossProb = loss;
 		corruptProb = corrupt;
 		avgMessageDelay = avgDelay;
+		payloadSize = MAXDATASIZE;
 		traceLevel = trace;
 		
-		eventList = new EventListImpl();
+		kernel = new SimulatorKernel(trace);
+		timers = new Event[2];
+		timerHandles = new TimerHandle[2];
+		channels = new Channel[] { new Channel(A, B), new Channel(B, A) };
+		wireFormat = false;
+		framePool = new FramePool();
+		compressors = null;
+		bitErrorModels = null;
+		fullSequenceSpace = false;
+		inspected = new Packet(0, 0, 0);
+		packetArena = null;
+		checksummer = ZipChecksummer.crc32c();
 		rand = new OSIRandom(seed);
+		this.seed = seed;
+		registerHandlers();
 		
-		time = 0;
 		numOfMessages = 0;
+		numOfOutputMessages = 0;
+		messageTimes = new double[64];
+		coalescer = null;
+		sendBufferCapacity = Integer.MAX_VALUE;
+		blockedSince = -1;
+		heldMessage = null;
+		blockedTime = 0;
+		numBlocked = 0;
+		spillHorizon = 0;
+		spillFile = null;
 		
 		try {
-			outFile = new FileWriter("OutputFile");
+			outFile = new BufferedOutputStream(new FileOutputStream("OutputFile"));
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -109,17 +202,64 @@ public abstract class NetworkSimulator {
 		nCorrupt = 0;
 		
 		nToLayer5 = 0;
-		packetsTransmittedByA = 0;
-		ACKSentByB = 0;
-		ACorrupt = 0;
-		BCorrupt = 0;
+		nMessagesToLayer5 = 0;
+		nBytesToLayer5 = 0;
+		messageDelaySum = 0;
+	}
+
+	/* Register A, B, the event types and what to do with each of them in the kernel */
+	private void registerHandlers() {
+		kernel.addEntity();		// A
+		kernel.addEntity();		// B
+		kernel.addEventType();	// TIMERINTERRUPT
+		kernel.addEventType();	// FROMLAYER5
+		kernel.addEventType();	// FROMLAYER3
+
+		kernel.setHandler(TIMERINTERRUPT, A, event -> {
+			timers[A] = null;
+			timerHandles[A] = null;
+			aTimerInterrupt();
+			resumeLayer5();
+		});
+		kernel.setHandler(TIMERINTERRUPT, B, event -> {
+			timers[B] = null;
+			timerHandles[B] = null;
+			System.out.println("Warning: Timeout for B, which has no timer interrupt");
+		});
+
+		// The event and its packet are recycled, protocols must copy
+		// a packet they want to keep after aInput() or bInput() returns
+		kernel.setHandler(FROMLAYER3, A, event -> {
+			channels[B].deliver();
+			fromLayer3(A, event);
+			resumeLayer5();
+		});
+		kernel.setHandler(FROMLAYER3, B, event -> {
+			channels[A].deliver();
+			fromLayer3(B, event);
+		});
+
+		kernel.setHandler(FROMLAYER5, A, event -> fromLayer5());
+
+		kernel.setTimerHandler(A, timer -> {
+			if (timer == coalescingTimer) {
+				flushCoalesced();
+			} else {
+				aTimerInterrupt(timer);
+			}
+			resumeLayer5();
+		});
+		kernel.setTimerHandler(B, timer -> bTimerInterrupt(timer));
 	}
 
 	/**
 	 * This method will be ran by the simulator
 	 * */
 	public void runNumOfMessageSimulator() throws InterruptedException {
-		Event next;
+		if (coalescer != null && MessageCoalescer.framedSize(payloadSize) > coalescer.getMaxPayloadSize()) {
+			throw new IllegalArgumentException("Messages of " + payloadSize + " bytes do not fit in coalesced payloads of "
+					+ coalescer.getMaxPayloadSize() + " bytes");
+		}
 
 		// Perform any student-required initialization
 		aInit();
@@ -130,77 +270,13 @@ public abstract class NetworkSimulator {
 		generateNextArrival();
 
 		// Begin the main loop
-		while (true) {
-			// Get our next event
-			next = eventList.removeNext();
-			if (next == null) {
-				break;
-			}
-
-			if (traceLevel >= 2) {
-				System.out.println();
-				System.out.print("EVENT time: " + next.getTime());
-				System.out.print("  type: " + next.getType());
-				System.out.println("  entity: " + next.getEntity());
-			}
-
-			// Advance the simulator's time
-			time = next.getTime();
-
-			// Perform the appropriate action based on the event
-			switch (next.getType()) {
-			
-				case TIMERINTERRUPT:
-					if (next.getEntity() == A) {
-						aTimerInterrupt();
-					} else {
-						System.out.println("INTERNAL PANIC: Timeout for " + "invalid entity");
-					}
-					break;
-	
-				case FROMLAYER3:
-					if (next.getEntity() == A) {
-						aInput(next.getPacket());
-					} else if (next.getEntity() == B) {
-						bInput(next.getPacket());
-					} else {
-						System.out.println("INTERNAL PANIC: basic.Packet has " + "arrived for unknown entity");
-					}
-					break;
-	
-				case FROMLAYER5:
-
-					// If we've reached the maximum message count, exit the main loop
-					if (numOfMessages == maxMessages)
-						break;
+		kernel.run();
 
-					// If a message has arrived from layer 5, we need to
-					// schedule the arrival of the next message
-					generateNextArrival();
-	
-					char[] nextMessage = new char[MAXDATASIZE];
-	
-					// Now, let's generate the contents of this message
-					char j = (char) ((numOfMessages % 26) + 97);
-					for (int i = 0; i < MAXDATASIZE; i++) {
-						nextMessage[i] = j;
-					}
-	
-					// Increment the message counter
-					numOfMessages++;
-
-					// Let the student handle the new message
-					aOutput(new Message(new String(nextMessage)));
-					break;
-	
-				default:
-					System.out.println("INTERNAL PANIC: Unknown event type");
-			}
-			if (eventList.isEmpty())
-				break;
-		}
 		System.out.println("Simulator terminated at time " + getTime());
 		Simulation_done();
+		if (spillFile != null) {
+			spillFile.close();
+		}
 		try {
 			outFile.flush();
 			outFile.close();
@@ -209,6 +285,147 @@ public abstract class NetworkSimulator {
 		}
 	}
 
+	/* A packet has arrived from layer 3 at entity, as an object or in its wire format */
+	private void fromLayer3(int entity, Event event) {
+		ByteBuffer frame = event.getFrame();
+		if (frame == null) {
+			input(entity, event.getPacket());
+			return;
+		}
+
+		int sender = entity == A ? B : A;
+		if (compressors != null) {
+			frame = decompress(channels[sender], compressors[sender], frame);
+		}
+
+		// Bit errors may leave a frame that cannot be parsed at all, drop it like a bad frame
+		if (bitErrorModels != null && !PacketCodec.isWellFormed(frame, frame.position(), frame.remaining())) {
+			channels[sender].dropMalformed();
+			framePool.release(frame);
+			return;
+		}
+
+		PacketPool packetPool = kernel.getPacketPool();
+		Packet packet = packetPool.acquire(frame);
+		framePool.release(frame);
+		input(entity, packet);
+		packetPool.release(packet);
+	}
+
+	private void input(int entity, Packet packet) {
+		if (entity == A) {
+			aInput(packet);
+		} else {
+			bInput(packet);
+		}
+	}
+
+	/* A message has arrived from layer 5 of A */
+	private void fromLayer5() {
+		// If we've reached the maximum message count, stop generating messages
+		if (numOfMessages == maxMessages)
+			return;
+
+		byte[] nextMessage = new byte[payloadSize];
+
+		// Now, let's generate the contents of this message
+		byte j = (byte) ((numOfMessages % 26) + 97);
+		Arrays.fill(nextMessage, j);
+
+		// Increment the message counter
+		if (numOfMessages == messageTimes.length) {
+			messageTimes = Arrays.copyOf(messageTimes, 2 * numOfMessages);
+		}
+		messageTimes[numOfMessages] = getTime();
+		numOfMessages++;
+
+		// A full send buffer blocks layer 5: the message is held, from its arrival time on,
+		// and no other one arrives until A frees space, see resumeLayer5()
+		if (isSendBufferFull()) {
+			heldMessage = nextMessage;
+			blockedSince = getTime();
+			numBlocked++;
+			if (traceLevel > 2) {
+				System.out.println("fromLayer5: blocked by a full send buffer at time " + getTime());
+			}
+			return;
+		}
+
+		// If a message has arrived from layer 5, we need to
+		// schedule the arrival of the next message
+		generateNextArrival();
+		output(nextMessage);
+	}
+
+	/* Hand a message from layer 5 to A */
+	private void output(byte[] message) {
+		if (coalescer != null) {
+			coalesce(message);
+			return;
+		}
+
+		// Let the student handle the new message
+		numOfOutputMessages++;
+		aOutput(new Message(message));
+	}
+
+	/*
+	 * Add a message to the coalesced payload. The payload goes to aOutput() as one message 
+	 * once another message of the same size would not fit, when the coalescing timer 
+	 * started by its first message expires, or after the last message of the run. 
+	 * */
+	private void coalesce(byte[] message) {
+		if (!coalescer.isEmpty() && !coalescer.fits(message)) {
+			flushCoalesced();
+		}
+		if (coalescer.isEmpty()) {
+			restartTimer(coalescingTimer, maxCoalescingDelay);
+		}
+		coalescer.add(message);
+
+		if (!coalescer.fits(message) || numOfMessages == maxMessages) {
+			flushCoalesced();
+		}
+	}
+
+	/* Hand the coalesced messages to aOutput() as one message */
+	private void flushCoalesced() {
+		if (coalescingTimer.isRunning()) {
+			kernel.stopTimer(coalescingTimer);
+		}
+		if (coalescer.isEmpty()) {
+			return;
+		}
+
+		if (traceLevel > 2) {
+			System.out.println("flushCoalesced: " + coalescer.getNumMessages() + " messages, " + coalescer.getSize() + " bytes");
+		}
+		numOfOutputMessages++;
+		aOutput(new Message(coalescer.drain()));
+	}
+
+	/* Unblock layer 5 once A has freed space in the send buffer that blocked it, handing over the held message */
+	private void resumeLayer5() {
+		if (heldMessage == null || isSendBufferFull()) {
+			return;
+		}
+		blockedTime += getTime() - blockedSince;
+		blockedSince = -1;
+		byte[] message = heldMessage;
+		heldMessage = null;
+
+		generateNextArrival();
+		output(message);
+	}
+
+	/**
+	 * True if A holds getSendBufferCapacity() packets, in its window and behind it, and cannot
+	 * take another message from layer 5. Protocols with a bounded send buffer override it.
+	 * */
+	protected boolean isSendBufferFull() {
+		return false;
+	}
+
 	/* Generate the next arrival and add it to the event list */
 	private void generateNextArrival() {
 		if (traceLevel > 2) {
@@ -219,11 +436,10 @@ public abstract class NetworkSimulator {
 		// having mean of avgMessageDelay. 
 		// Should this be made into a Gaussian distribution?
 		double x = 2 * avgMessageDelay * rand.nextDouble(0);
-		Event next = new Event(time + x, FROMLAYER5, A);
+		Event next = kernel.schedule(x, FROMLAYER5, A);
 
-		eventList.add(next);
 		if (traceLevel > 2) {
-			System.out.println("generateNextArrival(): time is " + time);
+			System.out.println("generateNextArrival(): time is " + getTime());
 			System.out.println("generateNextArrival(): future time for " + "event " + next.getType() + " at entity "
 					+ next.getEntity() + " will be " + next.getTime());
 		}
@@ -233,19 +449,37 @@ public abstract class NetworkSimulator {
 	/*
 	 * calling_entityis either 0 (for stopping the A-side timer) 
 	 * or 1 (for stopping the B-side timer).
+	 * The timer event is only marked as cancelled, so this is O(1).
 	 * */
 	protected void stopTimer(int entity) {
 		if (traceLevel > 2) {
-			System.out.println("stopTimer: stopping timer at " + time);
+			System.out.println("stopTimer: stopping timer at " + getTime());
 		}
 
-		Event timer = eventList.removeTimer(entity);
+		Event timer = timers[entity];
 
 		// Let the student know they are attempting to cancel a non-existant
 		// timer
 		if (timer == null) {
 			System.out.println("stopTimer: Warning: Unable to cancel your " + "timer");
+			return;
 		}
+
+		timer.cancel();
+		timers[entity] = null;
+		timerHandles[entity] = null;
+	}
+
+	/*
+	 * Stop the timer of handle if it is still running; 
+	 * a stale handle, whose timer has expired or been stopped, is only warned about. 
+	 * */
+	protected void stopTimer(TimerHandle handle) {
+		if (!isRunning(handle)) {
+			System.out.println("stopTimer: Warning: Unable to cancel your " + "timer, it is not running");
+			return;
+		}
+		stopTimer(handle.getEntity());
 	}
 	
 	/*
@@ -260,113 +494,334 @@ public abstract class NetworkSimulator {
 	 * To give you an idea of the appropriate increment value to use: 
 	 * a packet sent into the network takes an average of 5 time units 
 	 * to arrive at the other side when there are no other messages in the medium. 
+	 * Returns the handle of the running timer, see TimerHandle.
 	 * */
-	protected void startTimer(int entity, double increment) {
+	protected TimerHandle startTimer(int entity, double increment) {
 		if (traceLevel > 2) {
-			System.out.println("startTimer: starting timer at " + time);
+			System.out.println("startTimer: starting timer at " + getTime());
 		}
 
-		Event t = eventList.removeTimer(entity);
-
-		if (t != null) {
+		if (timers[entity] != null) {
 			System.out.println("startTimer: Warning: Attempting to start a " + "timer that is already running");
-			eventList.add(t);
-			return;
-		} else {
-			Event timer = new Event(time + increment, TIMERINTERRUPT, entity);
-			eventList.add(timer);
+			return timerHandles[entity];
+		}
+
+		return scheduleTimer(entity, increment);
+	}
+
+	/*
+	 * Stop the timer of calling_entity if it is running and start it again 
+	 * so that it expires increment time units from now. 
+	 * Same as stopTimer() followed by startTimer(), without the warnings. 
+	 * Returns the handle of the new timer; the handle of the old one is stale.
+	 * */
+	protected TimerHandle restartTimer(int entity, double increment) {
+		if (traceLevel > 2) {
+			System.out.println("restartTimer: restarting timer at " + getTime());
+		}
+
+		if (timers[entity] != null) {
+			timers[entity].cancel();
+		}
+
+		return scheduleTimer(entity, increment);
+	}
+
+	/*
+	 * Restart the timer of handle if it is still running, see restartTimer(entity, increment). 
+	 * A stale handle is warned about and returned as it is: the entity may run a newer timer, 
+	 * which is left alone. 
+	 * */
+	protected TimerHandle restartTimer(TimerHandle handle, double increment) {
+		if (!isRunning(handle)) {
+			System.out.println("restartTimer: Warning: Unable to restart your " + "timer, it is not running");
+			return handle;
 		}
+		return restartTimer(handle.getEntity(), increment);
+	}
+
+	/* Whether the timer of handle is the one running at its entity */
+	protected boolean isRunning(TimerHandle handle) {
+		return handle != null && timerHandles[handle.getEntity()] == handle;
+	}
+
+	/* Schedule the timer event of entity and give it a new handle */
+	private TimerHandle scheduleTimer(int entity, double increment) {
+		timers[entity] = kernel.schedule(increment, TIMERINTERRUPT, entity);
+		timerHandles[entity] = new TimerHandle(entity);
+		return timerHandles[entity];
 	}
 	
+	/*
+	 * Start a named timer at calling_entity, which expires in increment time units 
+	 * and calls aTimerInterrupt(timer) or bTimerInterrupt(timer). 
+	 * Unlike startTimer(entity, increment), an entity can run any number of these, 
+	 * e.g. one per outstanding packet. They are kept in a timing wheel, 
+	 * so starting, restarting and stopping them is O(1). 
+	 * */
+	protected NamedTimer startTimer(int entity, String name, double increment) {
+		NamedTimer timer = new NamedTimer(entity, name);
+		restartTimer(timer, increment);
+		return timer;
+	}
+
+	/*
+	 * Start timer again so that it expires increment time units from now, 
+	 * whether it is running or not. 
+	 * */
+	protected void restartTimer(NamedTimer timer, double increment) {
+		if (traceLevel > 2) {
+			System.out.println("startTimer: starting timer " + timer.getName() + " at " + getTime());
+		}
+
+		kernel.startTimer(timer, increment);
+	}
+
+	protected void stopTimer(NamedTimer timer) {
+		if (traceLevel > 2) {
+			System.out.println("stopTimer: stopping timer " + timer.getName() + " at " + getTime());
+		}
+
+		if (!kernel.stopTimer(timer)) {
+			System.out.println("stopTimer: Warning: Unable to cancel your " + "timer " + timer.getName());
+		}
+	}
+
+	/*
+	 * Called when a named timer of A or B expires. 
+	 * Protocols using named timers override these. 
+	 * */
+	protected void aTimerInterrupt(NamedTimer timer) {
+		System.out.println("aTimerInterrupt: Warning: No handler for timer " + timer.getName());
+	}
+
+	protected void bTimerInterrupt(NamedTimer timer) {
+		System.out.println("bTimerInterrupt: Warning: No handler for timer " + timer.getName());
+	}
+
 	/*
 	 * calling_entityis either 0 (for the A-side send) or 1 (for the B-side send), 
 	 * and packet is a structure of type pkt. 
 	 * Calling this routine will cause the packet to be sent into the network, 
 	 * destined for the other entity.
+	 * A packet the protocol keeps (see keep()) is copied into the network, 
+	 * any other packet is taken as it is and must not be used after this call. 
 	 * */
 	protected void toLayer3(int callingEntity, Packet p) {
 		nToLayer3++;
 
 		int destination;
 		double arrivalTime;
-		Packet packet = new Packet(p);
 
 		if (traceLevel > 2) {
-			System.out.println("toLayer3: " + packet);
+			System.out.println("toLayer3: " + p);
 		}
 
 		// Set our destination
 		if (callingEntity == A) {
-			packetsTransmittedByA++;
 			destination = B;
 		} else if (callingEntity == B) {
-			ACKSentByB++;
 			destination = A;
 		} else {
 			System.out.println("toLayer3: Warning: invalid packet sender");
+			discard(p);
 			return;
 		}
 
-		// Simulate losses
+		Channel channel = channels[callingEntity];
+		channel.send(PacketCodec.encodedSize(p));
+
+		// Simulate losses, before anything is copied
 		if (rand.nextDouble(1) < lossProb) {
 			nLost++;
+			channel.lose();
 
 			if (traceLevel > 0) {
 				System.out.println("toLayer3: packet being lost");
 			}
 
+			discard(p);
 			return;
 		}
 
 		// Decide when the packet will arrive. Since the medium cannot
 		// reorder, the packet will arrive 1 to 10 time units after the
 		// last packet sent by this sender
-		arrivalTime = eventList.getLastPacketTime(destination);
+		arrivalTime = channel.getLastArrivalTime();
 
 		if (arrivalTime <= 0.0) {
-			arrivalTime = time;
+			arrivalTime = getTime();
 		}
 
-		arrivalTime = arrivalTime + 1 + (rand.nextDouble(2) * 9);
+		arrivalTime = kernel.after(arrivalTime + 1, rand.nextDouble(2) * 9);
 
-		// Simulate corruption
-		if (rand.nextDouble(3) < corruptProb) {
-			nCorrupt++;
-			
-			if (callingEntity == A) {
-				ACorrupt++;
-			} else if (callingEntity == B) {
-				BCorrupt++;
+		// Put the packet into the network in its wire format, or as an object.
+		// A kept packet may still be written by its protocol, so it is copied,
+		// from the packet pool or as another view of its arena slot.
+		// Like a copy, the packet in the network does not carry the flag.
+		Packet packet = null;
+		ByteBuffer frame = null;
+		if (wireFormat) {
+			frame = encode(p);
+			discard(p);
+		} else if (p.isKept()) {
+			packet = kernel.getPacketPool().acquire(p);
+		} else {
+			packet = p;
+			packet.setFlag(false);
+		}
+
+		// Simulate corruption, by the bit error rate of the link or by the legacy model
+		if (bitErrorModels != null) {
+			if (bitErrorModels[callingEntity].corrupt(frame) > 0) {
+				nCorrupt++;
+				channel.corrupt();
+
+				if (traceLevel > 0) {
+					System.out.println("toLayer3: packet being corrupted");
+				}
+
+				checkCorrupted(channel, frame, null);
 			}
+		} else if (rand.nextDouble(3) < corruptProb) {
+			nCorrupt++;
+			channel.corrupt();
 
 			if (traceLevel > 0) {
 				System.out.println("toLayer3: packet being corrupted");
 			}
 
 			double x = rand.nextDouble(4);
-			if (x < 0.75) {
-				String payload = packet.getPayload();
+			if (frame != null) {
+				if (x < 0.75) {
+					PacketCodec.corruptPayload(frame, 0);
+				} else if (x < 0.875) {
+					PacketCodec.setSeqnum(frame, 0, 999999);
+				} else {
+					PacketCodec.setAcknum(frame, 0, 999999);
+				}
+			} else if (x < 0.75) {
+				// The payload may be shared with other packets, corrupt a copy
+				byte[] payload = packet.getPayloadBytes();
 
-				if (payload.length() > 0)
-					payload = "?" + payload.substring(1);
+				if (payload.length > 0)
+					payload = payload.clone();
 
 				else
-					payload = "?";
+					payload = new byte[1];
 
+				payload[0] = '?';
 				packet.setPayload(payload);
 			} else if (x < 0.875) {
 				packet.setSeqnum(999999);
 			} else {
 				packet.setAcknum(999999);
 			}
+
+			checkCorrupted(channel, frame, packet);
+		}
+
+		// Compress the frame as it goes on the link; the channel corrupts
+		// the packet itself, so the receiver sees the same corruption
+		if (frame != null && compressors != null) {
+			frame = compress(channel, compressors[callingEntity], frame);
 		}
 
 		// Finally, create and schedule this event
 		if (traceLevel > 2) {
 			System.out.println("toLayer3: scheduling arrival on other side");
 		}
-		Event arrival = new Event(arrivalTime, FROMLAYER3, destination, packet);
-		eventList.add(arrival);
+		if (frame != null) {
+			kernel.scheduleAt(arrivalTime, FROMLAYER3, destination, frame);
+		} else {
+			kernel.scheduleAt(arrivalTime, FROMLAYER3, destination, packet);
+		}
+		channel.schedule(arrivalTime);
+	}
+
+	/*
+	 * Count a corrupted packet, in frame or as packet, whose checksum still matches
+	 * as the receiver will compute it. A frame that cannot be parsed is dropped on arrival instead.
+	 * */
+	private void checkCorrupted(Channel channel, ByteBuffer frame, Packet packet) {
+		if (frame != null) {
+			if (!PacketCodec.isWellFormed(frame, frame.position(), frame.remaining())) {
+				return;
+			}
+			packet = inspected;
+			PacketCodec.decode(frame.duplicate(), packet);
+			packet.setFlag(false);
+		}
+		if (checksum(packet) == packet.getChecksum()) {
+			channel.corruptUndetected();
+		}
+	}
+
+	/* Give back a packet the network has taken over from its protocol and will not deliver */
+	private void discard(Packet packet) {
+		if (!packet.isKept()) {
+			kernel.getPacketPool().release(packet);
+		}
+	}
+
+	/*
+	 * Keep a packet in the buffers of a protocol, e.g. a sent packet waiting for its ACK. 
+	 * With a packet arena the packet is stored off the heap and the returned view is kept instead; 
+	 * toLayer3() then sends the view without copying it. 
+	 * Give it back with drop() when it leaves the buffer. 
+	 * */
+	protected Packet keep(Packet packet) {
+		Packet kept = packetArena == null ? packet : packetArena.allocate(packet);
+		kept.setKept(true);
+		return kept;
+	}
+
+	/* The checksum of a packet, over its header fields, SACK blocks and payload */
+	protected long checksum(Packet packet) {
+		return checksummer.checksum(packet);
+	}
+
+	/* The protocol no longer keeps a packet returned by keep() */
+	protected void drop(Packet packet) {
+		packet.setKept(false);
+		if (packet instanceof PacketView) {
+			((PacketView) packet).release();
+		}
+	}
+
+	/* Compress a frame into a new one and give it back, timing the compressor */
+	private ByteBuffer compress(Channel channel, FrameCompressor compressor, ByteBuffer frame) {
+		long start = System.nanoTime();
+		int size = frame.remaining();
+		ByteBuffer compressed = framePool.acquire(compressor.maxCompressedSize(size));
+		compressor.compress(frame, compressed);
+		compressed.flip();
+		channel.compress(size - compressed.remaining(), System.nanoTime() - start);
+
+		framePool.release(frame);
+		return compressed;
+	}
+
+	/* Decompress a frame into a new one and give it back, timing the compressor */
+	private ByteBuffer decompress(Channel channel, FrameCompressor compressor, ByteBuffer compressed) {
+		long start = System.nanoTime();
+		ByteBuffer frame = framePool.acquire(compressor.decompressedSize(compressed));
+		compressor.decompress(compressed, frame);
+		frame.flip();
+		channel.decompress(System.nanoTime() - start);
+
+		framePool.release(compressed);
+		return frame;
+	}
+
+	/* Encode a packet into a frame, with a byte to spare for corrupting an empty payload */
+	private ByteBuffer encode(Packet packet) {
+		int size = PacketCodec.encodedSize(packet);
+		ByteBuffer frame = framePool.acquire(size + 1);
+		frame.limit(size);
+		PacketCodec.encode(packet, frame);
+		frame.flip();
+		return frame;
 	}
 	
 	/**
@@ -376,9 +831,40 @@ public abstract class NetworkSimulator {
 	 * since we are only dealing with unidirectional data delivery to the B-side.
 	 * */
 	protected void toLayer5(String dataSent) {
+		toLayer5(dataSent.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Same as toLayer5(String), writing the bytes of a payload as they are.
+	 * */
+	protected void toLayer5(byte[] dataSent) {
 		nToLayer5++;
+		if (coalescer == null) {
+			deliver(dataSent, 0, dataSent.length);
+			return;
+		}
+
+		// Split a coalesced payload back into its messages
+		int offset = 0;
+		while (offset < dataSent.length) {
+			int length = MessageCoalescer.getLength(dataSent, offset);
+			offset += MessageCoalescer.lengthSize(length);
+			length = Math.max(0, Math.min(length, dataSent.length - offset));
+			deliver(dataSent, offset, length);
+			offset += length;
+		}
+	}
+
+	/* Write one message to the output file of layer 5 at B */
+	private void deliver(byte[] data, int offset, int length) {
+		// messages arrive in the order they were sent
+		if (nMessagesToLayer5 < numOfMessages) {
+			messageDelaySum += getTime() - messageTimes[nMessagesToLayer5];
+		}
+		nMessagesToLayer5++;
+		nBytesToLayer5 += length;
 		try {
-			outFile.write(dataSent, 0, MAXDATASIZE);
+			outFile.write(data, offset, length);
 			outFile.write('\n');
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -386,13 +872,201 @@ public abstract class NetworkSimulator {
 	}
 
 	protected double getTime() {
-		return time;
+		return kernel.getTime();
+	}
+
+	/** the clock in ticks, only kept in tick mode */
+	protected long getTicks() {
+		return kernel.getTicks();
+	}
+
+	/** a new sum of simulated times, in ticks in tick mode */
+	protected TimeSum newTimeSum() {
+		return new TimeSum(kernel.getTickLength());
+	}
+
+	/**
+	 * Switch to tick mode, where the clock is a long count of ticks of tickLength
+	 * time units, e.g. 1e-6, and the statistics sum times in ticks (see TimeSum).
+	 * Call it before runNumOfMessageSimulator().
+	 * */
+	public void setTickLength(double tickLength) {
+		kernel.setTickLength(tickLength);
 	}
 
 	protected void printEventList() {
-		System.out.println(eventList.toString());
+		System.out.println(kernel.toString());
 	}
-	
+
+	/**
+	 * Select the event list implementation, e.g. new EventListHeap().
+	 * Call it before runNumOfMessageSimulator(); the default is EventListImpl.
+	 * */
+	public void setEventList(EventList list) {
+		kernel.setEventList(list);
+	}
+
+	/**
+	 * Send packets through the network encoded in their wire format (see PacketCodec)
+	 * instead of as objects. Call it before runNumOfMessageSimulator().
+	 * Compressors and bit errors work on the wire format, so it cannot be turned off while they are set.
+	 * */
+	public void setWireFormat(boolean wireFormat) {
+		if (!wireFormat && (compressors != null || bitErrorModels != null)) {
+			throw new IllegalStateException("Wire format is needed by the compressors or the bit error rate that are set");
+		}
+		this.wireFormat = wireFormat;
+	}
+
+	/**
+	 * Compress the frames sent by A with aToB and those sent by B with bToA,
+	 * e.g. new DeltaCompressor(true); null for both to send frames as they are.
+	 * Compression works on the wire format, so it turns setWireFormat(true) on.
+	 * Call it before runNumOfMessageSimulator().
+	 * */
+	public void setCompressors(FrameCompressor aToB, FrameCompressor bToA) {
+		if (aToB == null || bToA == null) {
+			compressors = null;
+			return;
+		}
+		compressors = new FrameCompressor[] { aToB, bToA };
+		wireFormat = true;
+	}
+
+	/**
+	 * Corrupt packets by flipping each bit of their wire format with probability bitErrorRate,
+	 * e.g. 1e-5, instead of with corruptProb per packet, so longer packets are corrupted more often.
+	 * Works on the wire format, so it turns setWireFormat(true) on.
+	 * Call it before runNumOfMessageSimulator().
+	 * */
+	public void setBitErrorRate(double bitErrorRate) {
+		setBitErrorRate(bitErrorRate, 1);
+	}
+
+	/**
+	 * Same as setBitErrorRate(double), with errors in bursts of meanBurstLength bits on average
+	 * (see BitErrorModel); bursts are rarer, so the rate of flipped bits stays bitErrorRate.
+	 * */
+	public void setBitErrorRate(double bitErrorRate, double meanBurstLength) {
+		bitErrorModels = new BitErrorModel[] { new BitErrorModel(bitErrorRate, meanBurstLength, seed),
+				new BitErrorModel(bitErrorRate, meanBurstLength, seed + 1) };
+		wireFormat = true;
+	}
+
+	/**
+	 * Number the packets in the full 32-bit sequence space, compared modulo 2^32
+	 * (see SequenceSpace), instead of modulo twice the window size.
+	 * Call it before runNumOfMessageSimulator().
+	 * */
+	public void setFullSequenceSpace(boolean fullSequenceSpace) {
+		this.fullSequenceSpace = fullSequenceSpace;
+	}
+
+	/*
+	 * The sequence numbers of a protocol with a window of windowSize packets:
+	 * twice the window size, enough for Selective Repeat, or the 32-bit space.
+	 * */
+	protected SequenceSpace getSequenceSpace(int windowSize) {
+		return fullSequenceSpace ? SequenceSpace.full() : new SequenceSpace(2L * windowSize);
+	}
+
+	/**
+	 * Keep the packets buffered by the protocols in arena, off the heap (see keep()).
+	 * Its slots must have room for the payload size, or the coalesced payload size, see PacketArena(int, int).
+	 * Call it before runNumOfMessageSimulator().
+	 * */
+	public void setPacketArena(PacketArena arena) {
+		packetArena = arena;
+	}
+
+	/**
+	 * Coalesce consecutive messages from layer 5 into one message of up to maxPayloadSize bytes
+	 * before handing them to aOutput(), like Nagle's algorithm; a message waits at most maxDelay
+	 * time units for others to join it. The payloads delivered by toLayer5() are split back
+	 * into the original messages. Call it before runNumOfMessageSimulator().
+	 * */
+	public void setCoalescing(int maxPayloadSize, double maxDelay) {
+		if (maxPayloadSize < 1 || maxPayloadSize > MAX_PAYLOAD_SIZE) {
+			throw new IllegalArgumentException("Coalesced payload size must be from 1 to " + MAX_PAYLOAD_SIZE + ": " + maxPayloadSize);
+		}
+		coalescer = new MessageCoalescer(maxPayloadSize);
+		maxCoalescingDelay = maxDelay;
+		coalescingTimer = new NamedTimer(A, "coalescing");
+	}
+
+	/**
+	 * Bound the packets A buffers, in its window and behind it, to capacity. While the buffer is full
+	 * layer 5 is blocked: the message that arrives is held until A frees space instead of piling up
+	 * behind the window, and no other one arrives meanwhile. Its delay counts from its arrival,
+	 * so the average message delay includes the time spent blocked, which is also counted.
+	 * A coalesced payload flushed by its timer may still go over by one packet.
+	 * No bound by default. Call it before runNumOfMessageSimulator().
+	 * */
+	public void setSendBufferCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Send buffer capacity must be positive: " + capacity);
+		}
+		sendBufferCapacity = capacity;
+	}
+
+	protected int getSendBufferCapacity() {
+		return sendBufferCapacity;
+	}
+
+	/**
+	 * Keep only the first horizon packets A buffers in memory, its window and the start of its backlog,
+	 * and spill the rest of the backlog to a memory-mapped file (see PacketSpillFile), paged back in
+	 * as the window slides. For runs that overload A on purpose. The horizon must be at least the
+	 * window size; 0, the default, keeps every packet in memory. Call it before runNumOfMessageSimulator().
+	 * */
+	public void setBacklogSpill(int horizon) {
+		if (horizon < 0) {
+			throw new IllegalArgumentException("Horizon must not be negative: " + horizon);
+		}
+		spillHorizon = horizon;
+	}
+
+	/* Spill the backlog of the sender queue of A to a file, if setBacklogSpill() asked for it */
+	protected void spillBacklog(RingBufferQueue<Packet> senderQueue) {
+		if (spillHorizon == 0) {
+			return;
+		}
+		spillFile = new PacketSpillFile(packetArena);
+		senderQueue.setSpill(spillFile, spillHorizon);
+	}
+
+	/**
+	 * Make every message from layer 5 payloadSize bytes long, from 1 to MAX_PAYLOAD_SIZE;
+	 * MAXDATASIZE by default. Call it before runNumOfMessageSimulator().
+	 * */
+	public void setPayloadSize(int payloadSize) {
+		if (payloadSize < 1 || payloadSize > MAX_PAYLOAD_SIZE) {
+			throw new IllegalArgumentException("Payload size must be from 1 to " + MAX_PAYLOAD_SIZE + ": " + payloadSize);
+		}
+		this.payloadSize = payloadSize;
+	}
+
+	public int getPayloadSize() {
+		return payloadSize;
+	}
+
+	/**
+	 * Use checksummer for the checksum of every packet, e.g. ZipChecksummer.adler32()
+	 * or new InternetChecksummer(). CRC32C by default.
+	 * Call it before runNumOfMessageSimulator().
+	 * */
+	public void setChecksummer(Checksummer checksummer) {
+		this.checksummer = checksummer;
+	}
+
+	/**
+	 * In debug mode released events and packets are never reused,
+	 * so a protocol holding on to a dispatched packet fails loudly.
+	 * */
+	public void setPoolDebug(boolean debug) {
+		kernel.setPoolDebug(debug);
+	}
+
 	/** getters for statistics */
 	protected int getMaxMessages() {
 		return maxMessages;
@@ -415,28 +1089,108 @@ public abstract class NetworkSimulator {
 		return nToLayer5;
 	}
 	
+	/** messages from layer 5 handed to aOutput(), the original packets of the protocol */
+	protected int getNumOfOutputMessages() {
+		return numOfOutputMessages;
+	}
+
+	/** messages delivered to layer 5 at B, more than getNtoLayer5() when they are coalesced */
+	protected int getNumOfMessagesToLayer5() {
+		return nMessagesToLayer5;
+	}
+
+	/** average time from a message coming from layer 5 at A to its delivery to layer 5 at B */
+	protected double getAverageMessageDelay() {
+		return nMessagesToLayer5 > 0 ? messageDelaySum / Math.min(nMessagesToLayer5, numOfMessages) : 0;
+	}
+
+	/** bytes of data delivered to layer 5 at B, the goodput in bytes */
+	protected long getBytesToLayer5() {
+		return nBytesToLayer5;
+	}
+
+	/** bytes the compressors kept off the links, in both directions */
+	protected long getBytesSavedByCompression() {
+		return channels[A].getNumBytesSaved() + channels[B].getNumBytesSaved();
+	}
+
+	/** milliseconds spent compressing and decompressing frames, in both directions */
+	protected double getCompressionTime() {
+		return (channels[A].getCompressionNanos() + channels[B].getCompressionNanos()) / 1e6;
+	}
+
+	/** corrupted packets whose checksum still matched, in both directions */
+	protected int getNumUndetectedCorruptions() {
+		return channels[A].getNumUndetected() + channels[B].getNumUndetected();
+	}
+
+	/** corrupted frames dropped on arrival because they could not be parsed, in both directions */
+	protected int getNumMalformedFrames() {
+		return channels[A].getNumMalformed() + channels[B].getNumMalformed();
+	}
+
+	/** packets of the backlog of A spilled to a file */
+	protected long getNumSpilledPackets() {
+		return spillFile == null ? 0 : spillFile.getNumSpilled();
+	}
+
+	/** the size the spill file has grown to, in bytes */
+	protected long getSpillFileSize() {
+		return spillFile == null ? 0 : spillFile.getFileSize();
+	}
+
+	/** how many times a full send buffer blocked layer 5 */
+	protected int getNumSendBufferBlocks() {
+		return numBlocked;
+	}
+
+	/** the time layer 5 spent blocked by a full send buffer, so far */
+	protected double getSendBufferBlockedTime() {
+		return blockedSince < 0 ? blockedTime : blockedTime + getTime() - blockedSince;
+	}
+
+	/** bytes of data delivered to layer 5 at B per time unit of the run */
+	protected double getGoodput() {
+		double time = getTime();
+		return time > 0 ? nBytesToLayer5 / time : 0;
+	}
+
 	protected int getPacketsTransmittedByA() {
-		return packetsTransmittedByA;
+		return channels[A].getNumSent();
 	}
 	
 	protected int getACKSentByB() {
-		return ACKSentByB;
+		return channels[B].getNumSent();
+	}
+
+	/** bytes sent by A and by B, every packet counted in its wire format */
+	protected long getBytesTransmittedByA() {
+		return channels[A].getNumBytesSent();
+	}
+
+	protected long getBytesTransmittedByB() {
+		return channels[B].getNumBytesSent();
 	}
 
 	public int getACorrupt() {
-		return ACorrupt;
+		return channels[A].getNumCorrupted();
 	}
 
 	public void setACorrupt(int aCorrupt) {
-		ACorrupt = aCorrupt;
+		channels[A].setNumCorrupted(aCorrupt);
 	}
 
 	public int getBCorrupt() {
-		return BCorrupt;
+		return channels[B].getNumCorrupted();
 	}
 
 	public void setBCorrupt(int bCorrupt) {
-		BCorrupt = bCorrupt;
+		channels[B].setNumCorrupted(bCorrupt);
+	}
+
+	/** per-direction statistics, callingEntity is the sending side */
+	protected Channel getChannel(int callingEntity) {
+		return channels[callingEntity];
 	}
 
 }
@@ -1,12 +1,10 @@
 package simulator;
 
-import java.util.zip.CRC32;
-import java.util.zip.Checksum;
-
 import packet.Message;
 import packet.Packet;
 import util.SelectiveRepeatReceiverQueue;
 import util.SelectiveRepeatSenderQueue;
+import util.SequenceSpace;
 
 
 /**
@@ -23,7 +21,8 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 	public static final int FirstSeqNo = 0;
 	private int windowSize;
 	private double retransmitInterval;
-	private int limitSeqNo;
+	/** the sequence numbers, see NetworkSimulator.setFullSequenceSpace() */
+	private SequenceSpace seqSpace;
 
 	/**
 	 * Add any necessary class variables here. Remember, you cannot use
@@ -41,26 +40,19 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 	private int retransmissionsByA;
 	private int originalPacketsTransmittedByA;
 	
-	private double accumulativeRTT;
+	private TimeSum accumulativeRTT;
 	private int totalNumOfPacketsForRTT;
 	
-	private double accumulativeCommunicationStartTime;
-	private double accumulativeCommunicationEndTime;
+	private TimeSum accumulativeCommunicationStartTime;
+	private TimeSum accumulativeCommunicationEndTime;
 	
 	/** Also add any necessary methods (e.g. checksum of a String) */ 
 	
 	/**
-	 * get checksum of a packet by java.util.zip Checksum and CRC32
+	 * get checksum of a packet by the checksummer of the simulator, see setChecksummer()
 	 * */
 	private long getChecksumOfPacket(Packet packet) {
-		
-		String text = packet.getSeqnum() + packet.getAcknum() + packet.getPayload();
-		byte[] bytes = text.getBytes();
-		
-		Checksum crc32 = new CRC32();
-		crc32.update(bytes, 0, bytes.length);
-		
-		return crc32.getValue();
+		return checksum(packet);
 	}
 
 	public SelectiveRepeatSimulator(int numMessages, double loss, double corrupt, double avgDelay, int trace, int seed,
@@ -69,7 +61,6 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		super(numMessages, loss, corrupt, avgDelay, trace, seed);
 		
 		windowSize = winsize;
-		limitSeqNo = winsize * 2;	// set appropriately; assumes Selective Repeat here!
 		retransmitInterval = timeout;
 	}
 
@@ -79,19 +70,27 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 	 * (e.g. of member variables you add to control the state of entity A).
 	 * */
 	protected void aInit() {
+		seqSpace = getSequenceSpace(windowSize);	// twice the window size; assumes Selective Repeat here!
 		senderSequenceNumber = FirstSeqNo;
 		lastACKNum = -1;
-		senderBuffer = new SelectiveRepeatSenderQueue<Packet>(windowSize);
+		senderBuffer = new SelectiveRepeatSenderQueue<Packet>(windowSize, seqSpace);
+		senderBuffer.setCapacity(getSendBufferCapacity());
+		spillBacklog(senderBuffer);
 		isTimerStarted = false;
 		
 		/** initialize custom statistics */
 		retransmissionsByA = 0;
 		originalPacketsTransmittedByA = 0;
-		accumulativeRTT = 0;
+		accumulativeRTT = newTimeSum();
 		totalNumOfPacketsForRTT = 0;
-		accumulativeCommunicationStartTime = 0;
-		accumulativeCommunicationEndTime = 0;
+		accumulativeCommunicationStartTime = newTimeSum();
+		accumulativeCommunicationEndTime = newTimeSum();
+
+	}
 
+	@Override
+	protected boolean isSendBufferFull() {
+		return senderBuffer.isBufferFull();
 	}
 
 	/**
@@ -105,17 +104,17 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 			System.out.println("Calling aOutput()...");
 		}
 		
-		Packet packet = new Packet(senderSequenceNumber, 0, 0, message.getData());
+		Packet packet = new Packet(senderSequenceNumber, 0, 0, message.getDataBytes());
 		packet.setChecksum(getChecksumOfPacket(packet));
 		
 		// buffer this packet
-		senderBuffer.add(packet);
+		senderBuffer.add(keep(packet));
 		if ( traceLevel > 3 ) {
 			System.out.println(senderBuffer);
 		}
 		
 		// update sequence number
-		senderSequenceNumber = (senderSequenceNumber + 1) % limitSeqNo;
+		senderSequenceNumber = seqSpace.next(senderSequenceNumber);
 		
 		// if the sender still has packet to send, start the timer
 		boolean prepareTimer = false;
@@ -128,8 +127,8 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		while ( senderBuffer.hasNextToSend() ) {
 			nextPacket = senderBuffer.getNextToSend();
 			nextPacket.setSendTime(getTime());
-			accumulativeCommunicationStartTime += getTime();
-			toLayer3(0, new Packet(nextPacket));
+			accumulativeCommunicationStartTime.add(getTime());
+			toLayer3(0, nextPacket);
 			originalPacketsTransmittedByA++;	// statistics
 			System.out.println("wwwwwwwwwwwwwwwwwwwwwwwwwwwww");
 		}
@@ -184,7 +183,7 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 			System.out.println("duplicate ACK: " + cumulativeACK);
 			// retransmit only the next missing unACK'ed packet
 			nextPacket.setRetransmitted(true);
-			toLayer3(0, new Packet(nextPacket));
+			toLayer3(0, nextPacket);
 			
 			retransmissionsByA++;	// statistics
 			
@@ -194,20 +193,27 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 			return ;
 		}
 		
-		// cumulative ACK
+		// cumulative ACK, of the packets from baseNum to cumulativeACK unless it is an old one
+		int numAcked = senderBuffer.getNumAcked(cumulativeACK, baseNum);
+		for ( int i = 0; i < numAcked; i++ ) {
+			Packet acked = senderBuffer.getDatabyIndex(i);
+			if ( acked != null ) {
+				drop(acked);
+			}
+		}
 		senderBuffer.slide(cumulativeACK, baseNum);
-		if ( cumulativeACK - 1 > baseNum ) {
+		if ( numAcked > 2 ) {
 			System.out.println("CumulativeACK: " + cumulativeACK + " baseNum: " + baseNum);
 		}
 		
 		// statistic for average RTT and communication time
 		if ( !packet.isRetransmitted() ) {
-			accumulativeRTT += (getTime() - packet.getSendTime());
+			accumulativeRTT.add(getTime() - packet.getSendTime());
 			totalNumOfPacketsForRTT++;
 		}
 		
-		if ( cumulativeACK >= baseNum ) {
-			accumulativeCommunicationEndTime += (getTime() * (cumulativeACK - baseNum + 1));
+		if ( numAcked > 0 ) {
+			accumulativeCommunicationEndTime.add(getTime(), numAcked);
 		}
 
 		// if no more packets to be ACKed
@@ -233,8 +239,8 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		while ( senderBuffer.hasNextToSend() ) {
 			nextAvailablePacket = senderBuffer.getNextToSend();
 			nextAvailablePacket.setSendTime(getTime());
-			accumulativeCommunicationStartTime += getTime();
-			toLayer3(0, new Packet(nextAvailablePacket));
+			accumulativeCommunicationStartTime.add(getTime());
+			toLayer3(0, nextAvailablePacket);
 			originalPacketsTransmittedByA++;	// statistics
 		}
 		
@@ -259,7 +265,7 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		Packet nextPacket = senderBuffer.getFirst();
 		
 		nextPacket.setRetransmitted(true);
-		toLayer3(0, new Packet(nextPacket));
+		toLayer3(0, nextPacket);
 		retransmissionsByA++;	// statistics
 		
 		startTimer(0, retransmitInterval);
@@ -272,7 +278,8 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 	 * It can be used to do any required initialization.
 	 * */
 	protected void bInit() {
-		receiverBuffer = new SelectiveRepeatReceiverQueue<Packet>(windowSize);
+		seqSpace = getSequenceSpace(windowSize);
+		receiverBuffer = new SelectiveRepeatReceiverQueue<Packet>(windowSize, seqSpace);
 	}
 
 	/**
@@ -303,19 +310,10 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		}
 		
 		// if the sequence number is in [rcv_base, rcv_base + N - 1]
-		if ( (seqNum >= baseSeqNum && seqNum < baseSeqNum + windowSize) ||
-			 (seqNum < baseSeqNum 
-				&& baseSeqNum + windowSize > limitSeqNo 
-				&& seqNum < (baseSeqNum + windowSize) % limitSeqNo ) 
-		) {
+		if ( receiverBuffer.isInWindow(seqNum) ) {
 			
-			// buffer this packet
-			if ( seqNum >= baseSeqNum ) {
-				receiverBuffer.insert(new Packet(packet), seqNum - baseSeqNum);
-			}
-			else {
-				receiverBuffer.insert(new Packet(packet), (seqNum + 1 + limitSeqNo - 1 - baseSeqNum));
-			}
+			// buffer this packet at its offset (seqNum - rcv_base) mod the sequence space
+			receiverBuffer.insert(new Packet(packet), receiverBuffer.offsetOf(seqNum));
 			
 			if ( traceLevel > 3 ) {
 				System.out.println("seqNum is in [rcv_base, rcv_base + N - 1]");
@@ -332,9 +330,9 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 				double lastPacketSendTimeForCumulativeACK = 0;		
 				
 				while ( nextPacket != null ) {
-					if (seqNum + index == limitSeqNo - 1) {
+					if (seqSpace.add(seqNum, index) == seqSpace.last()) {
 						// send cumulative ACK when we hit the limit sequence number
-						Packet ackPacket = new Packet(0, seqNum + index, 0);
+						Packet ackPacket = new Packet(0, seqSpace.last(), 0);
 						ackPacket.setChecksum(getChecksumOfPacket(ackPacket));
 						
 						// statistic for average RTT
@@ -352,7 +350,7 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 					}
 					
 					// deliver in-order packets to layer 5
-					toLayer5(nextPacket.getPayload());
+					toLayer5(nextPacket.getPayloadBytes());
 					
 					// statistic for average RTT
 					lastPacketSendTimeForCumulativeACK = nextPacket.getSendTime();
@@ -361,10 +359,9 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 					nextPacket = receiverBuffer.getByIndex(index);
 				}
 
-				// delete the packets which have been delivered to layer 5
+				// delete the packets which have been delivered to layer 5,
+				// which moves the receive window base sequence number to baseSeqNum + index
 				receiverBuffer.slide(index);
-				// update the receive window base sequence number
-				receiverBuffer.setCurrentBaseSeqNum((baseSeqNum + index) % limitSeqNo);
 				
 				if ( traceLevel > 3 ) {
 					System.out.println("Receive window after slide: ");
@@ -372,8 +369,8 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 				}
 				
 				// send cumulative ACK
-				if ( seqNum + index - 1 != limitSeqNo - 1 ) {
-					Packet ackPacket = new Packet(0, (seqNum + index - 1) % limitSeqNo, 0);
+				if ( seqSpace.add(seqNum, index - 1) != seqSpace.last() ) {
+					Packet ackPacket = new Packet(0, seqSpace.add(seqNum, index - 1), 0);
 					ackPacket.setChecksum(getChecksumOfPacket(ackPacket));
 					
 					// statistic for average RTT
@@ -385,7 +382,7 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 						ackPacket.setRetransmitted(false);
 					}
 					
-					toLayer3(1, new Packet(ackPacket));		// udt_send
+					toLayer3(1, ackPacket);		// udt_send
 				}
 				
 				return ;
@@ -409,7 +406,7 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 	protected void Simulation_done() {
 		
 		String lineBreaker = System.lineSeparator();
-		int maxMessages = getMaxMessages();
+		int maxMessages = getNumOfOutputMessages();
 		int totalPacketsTransmittedByA = getPacketsTransmittedByA();
 		int nToLayer5 = getNtoLayer5();
 		int ACKSentByB = getACKSentByB();
@@ -436,14 +433,14 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		 * Note that data packets that are ACKed by the 
 		 * ACK of a subsequent packet are not part of this metric
 		 * */
-		double averageRTT = accumulativeRTT / totalNumOfPacketsForRTT;
+		double averageRTT = accumulativeRTT.get() / totalNumOfPacketsForRTT;
 		
 		/**
 		 * Average communication time: 
 		 * Average time between sending an original data packet 
 		 * and receiving its ACK, even if the data packet is retransmitted.
 		 * */
-		double averageCommunicationTime = (accumulativeCommunicationEndTime - accumulativeCommunicationStartTime) / maxMessages;
+		double averageCommunicationTime = accumulativeCommunicationEndTime.minus(accumulativeCommunicationStartTime) / maxMessages;
 		
 		/**
 		 * TO PRINT THE STATISTICS, FILL IN THE DETAILS BY PUTTING VARIBALE NAMES. 
@@ -475,6 +472,16 @@ public class SelectiveRepeatSimulator extends NetworkSimulator {
 		System.out.println("Number of lost packets: " + nLost);
 		System.out.println("A corrupt: " + getACorrupt());
 		System.out.println("B corrupt: " + getBCorrupt());
+		System.out.println("Payload size: " + getPayloadSize() + " bytes");
+		System.out.println("Messages delivered to layer 5 at B: " + getNumOfMessagesToLayer5());
+		System.out.println("Average message delay: " + String.format("%.3f", getAverageMessageDelay()));
+		System.out.println("Bytes delivered to layer 5 at B: " + getBytesToLayer5());
+		System.out.println("Goodput: " + String.format("%.3f", getGoodput()) + " bytes per time unit");
+		System.out.println("Bytes transmitted by A: " + getBytesTransmittedByA() + "  by B: " + getBytesTransmittedByB());
+		System.out.println("Bytes saved by compression: " + getBytesSavedByCompression() + " in " + String.format("%.3f", getCompressionTime()) + " ms");
+		System.out.println("Corruptions not detected by the checksum: " + getNumUndetectedCorruptions() + "  malformed frames dropped: " + getNumMalformedFrames());
+		System.out.println("Layer 5 blocked by a full send buffer: " + getNumSendBufferBlocks() + " times for " + String.format("%.3f", getSendBufferBlockedTime()) + " time units");
+		System.out.println("Packets spilled to disk: " + getNumSpilledPackets() + "  spill file size: " + getSpillFileSize() + " bytes");
 		System.out.println("==================================================");
 
 	}
@@ -0,0 +1,365 @@
+package simulator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import event.*;
+import packet.Packet;
+import packet.PacketPool;
+
+/**
+ * @author Phoenix TAN
+ * @description A discrete-event kernel for any number of entities and event types.
+ * 		Entities and event types are registered first, then a handler is set for each
+ * 		(event type, entity) pair, and run() dispatches every event straight to its handler
+ * 		through a table lookup. The kernel owns the clock, the event list, the timing wheel
+ * 		of the named timers and the event and packet pools.
+ * 		NetworkSimulator is the two-entity, three-event-type case of it.
+ * */
+public class SimulatorKernel {
+
+	private int traceLevel;
+
+	private EventList eventList;
+	private TimingWheel timerWheel;
+	private EventPool eventPool;
+	private PacketPool packetPool;
+
+	private int numOfEntities;
+	private int numOfEventTypes;
+	/** handlers[type][entity], and the handler given to entities added later */
+	private EventHandler[][] handlers;
+	private EventHandler[] defaultHandlers;
+	private TimerHandler[] timerHandlers;
+
+	/** the clock in time units, in double mode */
+	private double time;
+
+	/**
+	 * Tick mode: if tickLength > 0, the clock is ticks, a long count of ticks of tickLength time units,
+	 * and events are keyed by their tick (see Event.setTicks()). Delays and times are rounded to whole
+	 * ticks where they come in, so event times are exact and their order reproducible; getTime()
+	 * converts the clock back to time units.
+	 * */
+	private double tickLength;
+	private long ticks;
+
+	public SimulatorKernel(int trace) {
+		traceLevel = trace;
+
+		eventList = new EventListImpl();
+		timerWheel = new TimingWheel(1.0);
+		eventPool = new EventPool();
+		packetPool = new PacketPool();
+
+		numOfEntities = 0;
+		numOfEventTypes = 0;
+		handlers = new EventHandler[0][];
+		defaultHandlers = new EventHandler[0];
+		timerHandlers = new TimerHandler[0];
+
+		time = 0;
+		tickLength = 0;
+		ticks = 0;
+	}
+
+	/**
+	 * Register an entity and return its id. Ids are given out from 0.
+	 * */
+	public int addEntity() {
+		int entity = numOfEntities++;
+
+		if ( entity == timerHandlers.length ) {
+			int capacity = Math.max(2, entity * 2);
+			timerHandlers = Arrays.copyOf(timerHandlers, capacity);
+			for ( int type = 0; type < numOfEventTypes; type++ ) {
+				handlers[type] = Arrays.copyOf(handlers[type], capacity);
+			}
+		}
+
+		for ( int type = 0; type < numOfEventTypes; type++ ) {
+			handlers[type][entity] = defaultHandlers[type];
+		}
+		return entity;
+	}
+
+	/**
+	 * Register an event type and return its id. Ids are given out from 0.
+	 * */
+	public int addEventType() {
+		int type = numOfEventTypes++;
+		handlers = Arrays.copyOf(handlers, numOfEventTypes);
+		handlers[type] = new EventHandler[timerHandlers.length];
+		defaultHandlers = Arrays.copyOf(defaultHandlers, numOfEventTypes);
+		return type;
+	}
+
+	/**
+	 * Handle events of this type with handler at every entity, including entities added later.
+	 * */
+	public void setHandler(int type, EventHandler handler) {
+		checkEventType(type);
+		defaultHandlers[type] = handler;
+		Arrays.fill(handlers[type], 0, numOfEntities, handler);
+	}
+
+	/**
+	 * Handle events of this type with handler at entity only.
+	 * */
+	public void setHandler(int type, int entity, EventHandler handler) {
+		checkEventType(type);
+		checkEntity(entity);
+		handlers[type][entity] = handler;
+	}
+
+	public void setTimerHandler(int entity, TimerHandler handler) {
+		checkEntity(entity);
+		timerHandlers[entity] = handler;
+	}
+
+	public int getNumOfEntities() {
+		return numOfEntities;
+	}
+
+	public int getNumOfEventTypes() {
+		return numOfEventTypes;
+	}
+
+	/**
+	 * Schedule an event at time t. A packet is taken as it is, not copied,
+	 * and released with the event after it is handled.
+	 * */
+	public Event scheduleAt(double t, int type, int entity, Packet packet) {
+		checkEventType(type);
+		checkEntity(entity);
+
+		Event event = eventPool.acquire(t, type, entity, packet);
+		if (tickLength > 0) {
+			event.setTicks(toTicks(t), tickLength);
+		}
+		eventList.add(event);
+		return event;
+	}
+
+	/**
+	 * Schedule an event at time t carrying an encoded packet. The frame is taken as it is;
+	 * its handler owns it and is responsible for recycling it.
+	 * */
+	public Event scheduleAt(double t, int type, int entity, ByteBuffer frame) {
+		Event event = scheduleAt(t, type, entity, (Packet) null);
+		event.setFrame(frame);
+		return event;
+	}
+
+	public Event scheduleAt(double t, int type, int entity) {
+		return scheduleAt(t, type, entity, (Packet) null);
+	}
+
+	/** Schedule an event delay time units from now. */
+	public Event schedule(double delay, int type, int entity) {
+		if (tickLength > 0) {
+			return scheduleAtTicks(ticks + toTicks(delay), type, entity);
+		}
+		return scheduleAt(time + delay, type, entity, (Packet) null);
+	}
+
+	/* Schedule an event at a tick, in tick mode */
+	private Event scheduleAtTicks(long tick, int type, int entity) {
+		checkEventType(type);
+		checkEntity(entity);
+
+		Event event = eventPool.acquire(tick * tickLength, type, entity, null);
+		event.setTicks(tick, tickLength);
+		eventList.add(event);
+		return event;
+	}
+
+	/**
+	 * Cancel a scheduled event in O(1). It stays in the event list and is skipped when it comes up.
+	 * */
+	public void cancel(Event event) {
+		event.cancel();
+	}
+
+	/** Start or move a named timer of the timing wheel. */
+	public void startTimer(NamedTimer timer, double increment) {
+		if (tickLength > 0) {
+			timerWheel.schedule(timer, (ticks + toTicks(increment)) * tickLength);
+		} else {
+			timerWheel.schedule(timer, time + increment);
+		}
+	}
+
+	/** Returns false if the timer was not running. */
+	public boolean stopTimer(NamedTimer timer) {
+		return timerWheel.cancel(timer);
+	}
+
+	/**
+	 * Dispatch events and named timers in time order until there are none left.
+	 * */
+	public void run() throws InterruptedException {
+		Event next;
+
+		while (true) {
+			// Fire the next named timer if it is due before the next event
+			NamedTimer timer = timerWheel.peek();
+			if (timer != null) {
+				Event upcoming = eventList.peekNext();
+				if (upcoming == null || timer.getDeadline() < upcoming.getTime()) {
+					timerWheel.cancel(timer);
+					dispatchTimer(timer);
+					continue;
+				}
+			}
+
+			// Get our next event
+			next = eventList.removeNext();
+			if (next == null) {
+				break;
+			}
+
+			// Skip events that were cancelled after being scheduled
+			if (next.isCancelled()) {
+				eventPool.release(next);
+				if (eventList.isEmpty() && timerWheel.isEmpty())
+					break;
+				continue;
+			}
+
+			if (traceLevel >= 2) {
+				System.out.println();
+				System.out.print("EVENT time: " + next.getTime());
+				System.out.print("  type: " + next.getType());
+				System.out.println("  entity: " + next.getEntity());
+			}
+
+			// Advance the simulator's time, to the tick of the event in tick mode
+			if (tickLength > 0) {
+				ticks = next.getKey();
+			} else {
+				time = next.getTime();
+			}
+			timerWheel.advanceTo(next.getTime());
+
+			EventHandler handler = handlers[next.getType()][next.getEntity()];
+			if (handler == null) {
+				throw new IllegalStateException("No handler for event type " + next.getType() + " at entity "
+						+ next.getEntity());
+			}
+			handler.handle(next);
+
+			// The event and its packet are recycled, handlers must copy
+			// a packet they want to keep after they return
+			Packet packet = next.getPacket();
+			eventPool.release(next);
+			if (packet != null) {
+				packetPool.release(packet);
+			}
+
+			if (eventList.isEmpty() && timerWheel.isEmpty())
+				break;
+		}
+	}
+
+	/* Advance the time to a named timer and call its entity */
+	private void dispatchTimer(NamedTimer timer) {
+		if (traceLevel >= 2) {
+			System.out.println();
+			System.out.print("TIMER time: " + timer.getDeadline());
+			System.out.print("  name: " + timer.getName());
+			System.out.println("  entity: " + timer.getEntity());
+		}
+
+		// a deadline is a whole number of ticks in tick mode, see startTimer()
+		if (tickLength > 0) {
+			ticks = toTicks(timer.getDeadline());
+		} else {
+			time = timer.getDeadline();
+		}
+		timerWheel.advanceTo(timer.getDeadline());
+
+		TimerHandler handler = timerHandlers[timer.getEntity()];
+		if (handler == null) {
+			throw new IllegalStateException("No timer handler at entity " + timer.getEntity());
+		}
+		handler.expire(timer);
+	}
+
+	private void checkEventType(int type) {
+		if (type < 0 || type >= numOfEventTypes) {
+			throw new IllegalArgumentException("Unknown event type " + type);
+		}
+	}
+
+	private void checkEntity(int entity) {
+		if (entity < 0 || entity >= numOfEntities) {
+			throw new IllegalArgumentException("Unknown entity " + entity);
+		}
+	}
+
+	public double getTime() {
+		if (tickLength > 0) {
+			return ticks * tickLength;
+		}
+		return time;
+	}
+
+	/** the clock in ticks, only kept in tick mode */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Switch to tick mode, where simulated time is a long count of ticks
+	 * of tickLength time units, e.g. 1e-6. Call it before run().
+	 * */
+	public void setTickLength(double tickLength) {
+		this.tickLength = tickLength;
+	}
+
+	public double getTickLength() {
+		return tickLength;
+	}
+
+	/** a time in time units as a whole number of ticks, in tick mode */
+	public long toTicks(double t) {
+		return Math.round(t / tickLength);
+	}
+
+	/* The time delay after base. In tick mode both are rounded to whole ticks and added as longs. */
+	public double after(double base, double delay) {
+		if (tickLength > 0) {
+			return (toTicks(base) + toTicks(delay)) * tickLength;
+		}
+		return base + delay;
+	}
+
+	/**
+	 * Select the event list implementation, e.g. new EventListHeap().
+	 * Call it before run(); the default is EventListImpl.
+	 * */
+	public void setEventList(EventList list) {
+		if (!eventList.isEmpty()) {
+			System.out.println("setEventList: Warning: Replacing a non-empty event list");
+		}
+		eventList = list;
+	}
+
+	/**
+	 * In debug mode released events and packets are never reused,
+	 * so a handler holding on to a dispatched packet fails loudly.
+	 * */
+	public void setPoolDebug(boolean debug) {
+		eventPool.setDebug(debug);
+		packetPool.setDebug(debug);
+	}
+
+	public PacketPool getPacketPool() {
+		return packetPool;
+	}
+
+	public String toString() {
+		return eventList.toString();
+	}
+}
@@ -0,0 +1,60 @@
+package simulator;
+
+/**
+ * @author Phoenix TAN
+ * @description A sum of simulated times, e.g. of round trip times for a statistic.
+ * 		In tick mode (tickLength > 0) every time added is rounded to whole ticks and summed
+ * 		as a long, so the sum is exact however many times are added and whatever their order;
+ * 		otherwise the times are summed as doubles. See SimulatorKernel.setTickLength().
+ * */
+public class TimeSum {
+
+	private final double tickLength;
+	private long ticks;
+	private double time;
+
+	public TimeSum(double tickLength) {
+		this.tickLength = tickLength;
+		ticks = 0;
+		time = 0;
+	}
+
+	public void add(double t) {
+		if (tickLength > 0) {
+			ticks += Math.round(t / tickLength);
+		} else {
+			time += t;
+		}
+	}
+
+	/** add t n times */
+	public void add(double t, long n) {
+		if (tickLength > 0) {
+			ticks += Math.round(t / tickLength) * n;
+		} else {
+			time += t * n;
+		}
+	}
+
+	/** the sum in time units */
+	public double get() {
+		if (tickLength > 0) {
+			return ticks * tickLength;
+		}
+		return time;
+	}
+
+	/** this sum less other, in time units; in tick mode the ticks are subtracted first */
+	public double minus(TimeSum other) {
+		if (tickLength > 0) {
+			return (ticks - other.ticks) * tickLength;
+		}
+		return time - other.time;
+	}
+
+	/** the sum in ticks, only kept in tick mode */
+	public long getTicks() {
+		return ticks;
+	}
+
+}
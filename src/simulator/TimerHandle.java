@@ -0,0 +1,26 @@
+package simulator;
+
+/**
+ * @author Phoenix TAN
+ * @description The handle of an entity timer, returned by NetworkSimulator.startTimer().
+ * 		Timer events are pooled and reused, so a handle does not hold its event: a new handle
+ * 		is made for every timer started, and the simulator only acts on the handle of the
+ * 		timer running at the entity. Stopping or restarting a handle whose timer has expired
+ * 		or been stopped does nothing, whatever event the pool has reused since.
+ * */
+public final class TimerHandle {
+
+	private final int entity;
+
+	TimerHandle(int entity) {
+		this.entity = entity;
+	}
+
+	public int getEntity() {
+		return entity;
+	}
+
+	public String toString() {
+		return ("timer handle  entity: " + entity);
+	}
+}
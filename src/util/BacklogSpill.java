@@ -0,0 +1,16 @@
+package util;
+
+/**
+ * Author: Phoenix TAN
+ * Where a RingBufferQueue keeps the packets of its backlog beyond its in-memory horizon,
+ * first in first out, e.g. in a file. See RingBufferQueue.setSpill().
+ */
+
+public interface BacklogSpill<T> {
+
+	public void append(T t);
+	public T removeFirst();
+	public int size();
+	public void close();
+
+}
@@ -1,24 +1,21 @@
 package util;
 
-import java.util.ArrayList;
-
-import packet.Packet;
-
-public class GoBackNSenderQueue<T> implements SlidingWindowQueue<T>  {
-    private ArrayList<T> buffer;
-
-    protected int tail;
-    protected int windowSize;
+public class GoBackNSenderQueue<T> extends RingBufferQueue<T>  {
 
     private int curSeqNum;
+    /** the sequence number of the next packet added, after the last one of the backlog, spilled or not */
+    private int nextSeqNum;
     private int nextIndex;
 
 
     public GoBackNSenderQueue(int _windowSize) {
-        windowSize = _windowSize;
-        buffer = new ArrayList<T>(_windowSize);
-        tail = 0;
+        this(_windowSize, SequenceSpace.full());
+    }
+
+    public GoBackNSenderQueue(int _windowSize, SequenceSpace space) {
+        super(_windowSize, space);
         curSeqNum = 0;
+        nextSeqNum = 0;
         nextIndex = 0;
     }
 
@@ -30,78 +27,25 @@ public class GoBackNSenderQueue<T> implements SlidingWindowQueue<T>  {
         this.nextIndex = nextIndex;
     }
 
-    public T getDatabyIndex(int index) {
-        if(index >= buffer.size()){
-            return null;
-        }
-        return buffer.get(index);
-    }
-
-
-    public boolean isWindowFull() {
-        if ( tail != 0 && (tail) % windowSize == 0 ) {
-            return true;
-        }
-        return false;
-    }
-
-
-    public boolean isWindowEmpty() {
-        if ( tail == 0 ) {
-            return true;
-        }
-        return false;
-    }
-
-
-    public void add(T t) {
-        buffer.add(t);
-        tail = isWindowFull() ? tail : ++tail;
-    }
-
-
-    public T getFirst() {
-        if ( buffer.size() < 1 ) {
-            return null;
-        }
-        return buffer.get(0);
-    }
-
-
-    public T removeFirst() {
-        if(buffer.isEmpty()){
-            return null;
-        }
-        return buffer.remove(0);
-    }
-
-
-    public void slide(int ackSeqNum, int baseSeqNum) {
-        while ( baseSeqNum <= ackSeqNum ) {
-            removeFirst();
-            baseSeqNum++;
-            // update tail
-            tail = Math.min(windowSize, buffer.size());
-        }
-    }
-
     public String toString() {
         StringBuilder sb = new StringBuilder();
+        int tail = getTail();
         for ( int i = 0; i < tail; i++ ) {
-            sb.append(buffer.get(i));
+            sb.append(getDatabyIndex(i));
         }
         return sb.toString() + " tail: " + tail;
     }
 
     public T getTailData(){
+        int tail = getTail();
         if(tail == 0){
             return null;
         }
-        return buffer.get(tail - 1);
+        return getDatabyIndex(tail - 1);
     }
 
     public int getTailIndex(){
-        return tail;
+        return getTail();
     }
 
     public int getCurSeqNum() {
@@ -112,7 +56,11 @@ public class GoBackNSenderQueue<T> implements SlidingWindowQueue<T>  {
         this.curSeqNum = curSeqNum;
     }
 
-    public boolean isBufferFull() {
-        return buffer.size() >= 5;
+    public int getNextSeqNum() {
+        return nextSeqNum;
+    }
+
+    public void setNextSeqNum(int nextSeqNum) {
+        this.nextSeqNum = nextSeqNum;
     }
 }
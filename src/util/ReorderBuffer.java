@@ -0,0 +1,198 @@
+package util;
+
+/**
+ * Author: Phoenix TAN
+ * The receive window of a receiver: packets received out of order wait here, each in the slot
+ * of its offset (seqNum - base) mod modulus from the base of the window (see SequenceSpace), until the packets
+ * before them arrive. The slots are a ring whose capacity is a power of two, so sliding the
+ * window only moves the head, and a bitset tells which slots hold a packet.
+ * Inserting a packet, detecting a duplicate, checking that a sequence number is in the window
+ * and removing the packet at the base are O(1); nextOccupied() skips 64 empty slots at a time.
+ */
+public class ReorderBuffer<T> {
+
+	private static final int MIN_CAPACITY = 64;
+
+	private final int windowSize;
+	private final SequenceSpace space;
+
+	private final Object[] slots;
+	/** bit i is set if slot i holds a packet */
+	private final long[] occupied;
+	private final int mask;
+
+	/** the slot and the sequence number of the base of the window */
+	private int head;
+	private int baseSeqNum;
+	private int size;
+
+	/**
+	 * @param windowSize the number of sequence numbers from the base that can be buffered
+	 * @param space the sequence numbers, at least windowSize of them
+	 * */
+	public ReorderBuffer(int windowSize, SequenceSpace space) {
+		if ( windowSize < 1 || space.getModulus() < windowSize ) {
+			throw new IllegalArgumentException("Window size must be from 1 to the modulus " + space.getModulus() + ": " + windowSize);
+		}
+		this.windowSize = windowSize;
+		this.space = space;
+
+		int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(windowSize - 1) << 1);
+		slots = new Object[capacity];
+		occupied = new long[capacity / 64];
+		mask = capacity - 1;
+		head = 0;
+		baseSeqNum = 0;
+		size = 0;
+	}
+
+	public int getBaseSeqNum() {
+		return baseSeqNum;
+	}
+
+	/** move the base to seqNum without moving the packets, e.g. to start from another sequence number */
+	public void setBaseSeqNum(int seqNum) {
+		baseSeqNum = seqNum;
+	}
+
+	/** the offset of seqNum from the base of the window */
+	public int offsetOf(int seqNum) {
+		return (int) Math.min(space.distance(baseSeqNum, seqNum), Integer.MAX_VALUE);
+	}
+
+	/** the sequence number at offset from the base of the window */
+	public int seqNumAt(int offset) {
+		return space.add(baseSeqNum, offset);
+	}
+
+	/** true if seqNum is one of the windowSize sequence numbers from the base */
+	public boolean isInWindow(int seqNum) {
+		return space.isInWindow(baseSeqNum, seqNum, windowSize);
+	}
+
+	/** true if the packet of seqNum is buffered */
+	public boolean contains(int seqNum) {
+		return isInWindow(seqNum) && isOccupied(offsetOf(seqNum));
+	}
+
+	public boolean isOccupied(int offset) {
+		int slot = (head + offset) & mask;
+		return (occupied[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Buffer t as the packet of seqNum. Returns false, leaving the buffer as it is,
+	 * if seqNum is out of the window or its packet is already buffered.
+	 * */
+	public boolean insert(int seqNum, T t) {
+		if ( !isInWindow(seqNum) ) {
+			return false;
+		}
+		int offset = offsetOf(seqNum);
+		if ( isOccupied(offset) ) {
+			return false;
+		}
+		put(offset, t);
+		return true;
+	}
+
+	/** put t in the slot at offset from the base, replacing what is there; null empties it */
+	public void put(int offset, T t) {
+		checkOffset(offset);
+		int slot = (head + offset) & mask;
+		long bit = 1L << slot;
+		boolean wasOccupied = (occupied[slot >>> 6] & bit) != 0;
+
+		slots[slot] = t;
+		if ( t != null && !wasOccupied ) {
+			occupied[slot >>> 6] |= bit;
+			size++;
+		} else if ( t == null && wasOccupied ) {
+			occupied[slot >>> 6] &= ~bit;
+			size--;
+		}
+	}
+
+	/** the packet at offset from the base, null if there is none or offset is out of the window */
+	@SuppressWarnings("unchecked")
+	public T get(int offset) {
+		if ( offset < 0 || offset >= windowSize ) {
+			return null;
+		}
+		return (T) slots[(head + offset) & mask];
+	}
+
+	/** the packet at the base, null if it has not arrived */
+	public T getFirst() {
+		return get(0);
+	}
+
+	/** remove the packet at the base, which may be null, and slide the window by one */
+	public T removeFirst() {
+		T first = getFirst();
+		slide(1);
+		return first;
+	}
+
+	/** slide the window by k sequence numbers, dropping the packets buffered for them */
+	public void slide(int k) {
+		if ( k < 0 || k > windowSize ) {
+			throw new IllegalArgumentException("Cannot slide the window of " + windowSize + " by " + k);
+		}
+		for ( int offset = 0; offset < k; offset++ ) {
+			if ( isOccupied(offset) ) {
+				put(offset, null);
+			}
+		}
+		head = (head + k) & mask;
+		baseSeqNum = seqNumAt(k);
+	}
+
+	/** the first offset from from on that holds a packet, -1 if there is none in the window */
+	public int nextOccupied(int from) {
+		int offset = Math.max(0, from);
+		while ( offset < windowSize ) {
+			int slot = (head + offset) & mask;
+			// the bits of this slot and the ones after it in its word, which never wraps
+			long word = occupied[slot >>> 6] >>> slot;
+			if ( word != 0 ) {
+				int found = offset + Long.numberOfTrailingZeros(word);
+				return found < windowSize ? found : -1;
+			}
+			offset += 64 - (slot & 63);
+		}
+		return -1;
+	}
+
+	/** the number of packets buffered */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public SequenceSpace getSequenceSpace() {
+		return space;
+	}
+
+	private void checkOffset(int offset) {
+		if ( offset < 0 || offset >= windowSize ) {
+			throw new IndexOutOfBoundsException("Offset " + offset + " is out of the window of " + windowSize);
+		}
+	}
+
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for ( int offset = nextOccupied(0); offset >= 0; offset = nextOccupied(offset + 1) ) {
+			text.append(seqNumAt(offset) + ": " + get(offset) + "\n");
+		}
+		text.append("base: " + baseSeqNum + "  buffered: " + size + "\n");
+		return text.toString();
+	}
+}
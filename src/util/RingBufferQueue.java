@@ -0,0 +1,219 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Author: Phoenix TAN
+ * A sliding window over a backlog of packets kept in a ring buffer, from head to head + size.
+ * The capacity is a power of two, so an offset wraps around with a mask, and it doubles
+ * when the backlog outgrows it. The first windowSize packets are in the window.
+ * Adding a packet, getting the one at an offset from the window base and sliding
+ * the window by k packets are O(1), apart from clearing the k slots left behind.
+ * The sequence numbers given to slide() are compared in their SequenceSpace.
+ * The backlog is unbounded unless a capacity is set, which the producer checks with isBufferFull().
+ * With a BacklogSpill, at most horizon packets are kept in memory, the window and the start of the backlog;
+ * the rest of the backlog goes to the spill and comes back as the window slides.
+ */
+public class RingBufferQueue<T> implements SlidingWindowQueue<T> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private Object[] buffer;
+	private int mask;
+	private int head;
+	private int size;
+
+	protected int windowSize;
+	protected SequenceSpace space;
+	/** the most packets the window and the backlog should hold together */
+	private int capacity;
+	/** where the packets after the first horizon ones go, null to keep them all in memory */
+	private BacklogSpill<T> spill;
+	private int horizon;
+
+	/** a queue whose sequence numbers do not wrap around, in practice */
+	public RingBufferQueue(int _windowSize) {
+		this(_windowSize, SequenceSpace.full());
+	}
+
+	public RingBufferQueue(int _windowSize, SequenceSpace space) {
+		windowSize = _windowSize;
+		this.space = space;
+		int initialCapacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, _windowSize - 1)) << 1);
+		buffer = new Object[initialCapacity];
+		mask = initialCapacity - 1;
+		head = 0;
+		size = 0;
+		capacity = Integer.MAX_VALUE;
+		spill = null;
+		horizon = Integer.MAX_VALUE;
+	}
+
+	@Override
+	public boolean isWindowFull() {
+		return size >= windowSize;
+	}
+
+	@Override
+	public boolean isWindowEmpty() {
+		return size == 0;
+	}
+
+	/** true if the window and the backlog hold capacity packets, so no more should be added */
+	public boolean isBufferFull() {
+		return size() >= capacity;
+	}
+
+	@Override
+	public void add(T t) {
+		// the packets behind spilled ones are spilled too, to keep them in order
+		if ( spill != null && (size >= horizon || spill.size() > 0) ) {
+			spill.append(t);
+			return;
+		}
+		if ( size == buffer.length ) {
+			grow();
+		}
+		buffer[(head + size) & mask] = t;
+		size++;
+	}
+
+	/** the packet at offset from the window base, null if there is none or it is spilled */
+	@SuppressWarnings("unchecked")
+	public T getDatabyIndex(int offset) {
+		if ( offset < 0 || offset >= size ) {
+			return null;
+		}
+		return (T) buffer[(head + offset) & mask];
+	}
+
+	@Override
+	public T getFirst() {
+		return getDatabyIndex(0);
+	}
+
+	@Override
+	public T removeFirst() {
+		T first = getFirst();
+		if ( first != null ) {
+			removeFirst(1);
+		}
+		return first;
+	}
+
+	/** remove the first k packets, or all of them if there are fewer */
+	public void removeFirst(int k) {
+		k = Math.min(k, size);
+		if ( k <= 0 ) {
+			return;
+		}
+
+		int end = head + k;
+		if ( end <= buffer.length ) {
+			Arrays.fill(buffer, head, end, null);
+		} else {
+			Arrays.fill(buffer, head, buffer.length, null);
+			Arrays.fill(buffer, 0, end & mask, null);
+		}
+		head = end & mask;
+		size -= k;
+		pageIn();
+	}
+
+	/**
+	 * Slide the window past ackNum, baseNum being the sequence number of its first packet.
+	 * An ackNum out of the window is an old ACK and leaves the window as it is.
+	 * */
+	@Override
+	public void slide(int ackNum, int baseNum) {
+		int numAcked = getNumAcked(ackNum, baseNum);
+		if ( numAcked > 0 ) {
+			removeFirst(numAcked);
+		}
+	}
+
+	/**
+	 * The number of packets a cumulative ackNum acknowledges, baseNum being the sequence number
+	 * of the first packet: those up to ackNum if it is in the window, none for an older ACK.
+	 * Only the window is acceptable, like SND.UNA =< SEG.ACK < SND.NXT in TCP: a cumulative ACK
+	 * may come up to a whole window late, which is half of a space of twice the window size,
+	 * where comparing by serial number arithmetic alone is undefined.
+	 * */
+	public int getNumAcked(int ackNum, int baseNum) {
+		long distance = space.distance(baseNum, ackNum);
+		return distance < getTail() ? (int) distance + 1 : 0;
+	}
+
+	/** the number of packets in the window */
+	public int getTail() {
+		return Math.min(windowSize, size);
+	}
+
+	/** the number of packets in the window and in the backlog behind it */
+	public int size() {
+		return spill == null ? size : size + spill.size();
+	}
+
+	/** the number of packets of the backlog in the spill */
+	public int getNumSpilled() {
+		return spill == null ? 0 : spill.size();
+	}
+
+	/**
+	 * Keep only the first horizon packets in memory, which must include the window,
+	 * and the ones after them in spill. Call it while the queue is empty.
+	 * */
+	public void setSpill(BacklogSpill<T> spill, int horizon) {
+		if ( horizon < windowSize ) {
+			throw new IllegalArgumentException("Horizon must be at least the window size " + windowSize + ": " + horizon);
+		}
+		this.spill = spill;
+		this.horizon = horizon;
+	}
+
+	public SequenceSpace getSequenceSpace() {
+		return space;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** bound the packets in the window and the backlog to capacity, Integer.MAX_VALUE by default */
+	public void setCapacity(int capacity) {
+		if ( capacity < 1 ) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+	}
+
+	/* move the packets at the start of the spill into memory, up to horizon packets */
+	private void pageIn() {
+		if ( spill == null ) {
+			return;
+		}
+		while ( size < horizon && spill.size() > 0 ) {
+			if ( size == buffer.length ) {
+				grow();
+			}
+			buffer[(head + size) & mask] = spill.removeFirst();
+			size++;
+		}
+	}
+
+	/* double the capacity, unwrapping the packets to the start of the new buffer */
+	private void grow() {
+		Object[] old = buffer;
+		buffer = new Object[old.length * 2];
+		int firstPart = old.length - head;
+		System.arraycopy(old, head, buffer, 0, firstPart);
+		System.arraycopy(old, 0, buffer, firstPart, head);
+		mask = buffer.length - 1;
+		head = 0;
+	}
+
+}
@@ -1,38 +1,33 @@
 package util;
 
-import java.util.ArrayList;
-
 /**
  * Author: Phoenix TAN
  */
-public class SelectiveRepeatSenderQueue<T> implements SlidingWindowQueue<T> {
-	
-	private ArrayList<T> buffer;
-	
-	private int windowSize;
-	
+public class SelectiveRepeatSenderQueue<T> extends RingBufferQueue<T> {
+
 	private int nextSeqNumIndex;
-	private int tail;
-	
+
 	public SelectiveRepeatSenderQueue(int _windowSize) {
-		buffer = new ArrayList<T>();
-		windowSize = _windowSize;
+		this(_windowSize, SequenceSpace.full());
+	}
+
+	public SelectiveRepeatSenderQueue(int _windowSize, SequenceSpace space) {
+		super(_windowSize, space);
 		nextSeqNumIndex = 0;
-		tail = 0;
 	}
-	
+
 	public boolean hasNextToSend() {
-		if ( nextSeqNumIndex < tail ) {
+		if ( nextSeqNumIndex < getTail() ) {
 			return true;
 		}
 		return false;
 	}
-	
+
 	public T getNextToSend() {
-		if ( nextSeqNumIndex >= tail ) {
+		if ( nextSeqNumIndex >= getTail() ) {
 			return null;
 		}
-		T nextToSend = buffer.get(nextSeqNumIndex);
+		T nextToSend = getDatabyIndex(nextSeqNumIndex);
 		nextSeqNumIndex++;
 		return nextToSend;
 	}
@@ -40,62 +35,33 @@ public class SelectiveRepeatSenderQueue<T> implements SlidingWindowQueue<T> {
 	@Override
 	public boolean isWindowFull() {
 		// be careful the index tail
-		if ( (tail + 1) % windowSize == 0 ) {
+		if ( (getTail() + 1) % windowSize == 0 ) {
 			return true;
 		}
 		return false;
 	}
 
 	@Override
-	public boolean isWindowEmpty() {
-		if ( tail == 0 ) {
-			return true;
-		}
-		return false;
-	}
-
-	@Override
-	public void add(T t) {
-		buffer.add(t);
-		tail = Math.min(windowSize, buffer.size());
-	}
-
-	@Override
-	public T getFirst() {
-		if ( buffer.isEmpty() ) {
-			return null;
-		}
-		return buffer.get(0);
-	}
-
-	@Override
-	public T removeFirst() {
-		if(buffer.isEmpty() ){
-			return null;
+	public void slide(int ackNum, int baseNum) {
+		if ( getNumAcked(ackNum, baseNum) > 0 ) {
+			super.slide(ackNum, baseNum);
+			// nextSeqNumIndex = Math.max(0, nextSeqNumIndex - 1);	// be careful
+			nextSeqNumIndex = getTail();
 		}
-		return buffer.remove(0);
 	}
 
-	@Override
-	public void slide(int ackNum, int baseNum) {
-		while ( baseNum <= ackNum ) {
-			removeFirst();
-			baseNum++;
-			// update tail
-			tail = Math.min(windowSize, buffer.size());
-			// nextSeqNumIndex = Math.max(0, nextSeqNumIndex - 1);	// be careful 
-			nextSeqNumIndex = tail;
-		}	
-	}
-	
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		for ( int i = 0; i < buffer.size(); i++ ) {
+		int tail = getTail();
+		for ( int i = 0; i < size() - getNumSpilled(); i++ ) {
 			if ( i == tail ) {
 				sb.append("================ tail: " + tail + "==============" + "\n");
 			}
-			sb.append(buffer.get(i) + "\n");
-			
+			sb.append(getDatabyIndex(i) + "\n");
+
+		}
+		if ( getNumSpilled() > 0 ) {
+			sb.append("spilled: " + getNumSpilled() + "\n");
 		}
 		return sb.toString();
 	}
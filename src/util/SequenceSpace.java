@@ -0,0 +1,83 @@
+package util;
+
+/**
+ * Author: Phoenix TAN
+ * Sequence numbers that wrap around at modulus. They are compared by how far one is ahead
+ * of another modulo the space, and by whether it is in a window from a base, like
+ * SND.UNA =< SEG.ACK < SND.NXT in TCP, so comparisons keep working across the wrap.
+ * Serial number arithmetic (RFC 1982) alone is undefined at half the space, which is
+ * where a window takes the ACKs in a space of twice its size.
+ * A modulus of FULL_MODULUS uses every int as an unsigned 32-bit sequence number,
+ * e.g. for windows of millions of packets; where it goes on the wire it is written as 0.
+ */
+public final class SequenceSpace {
+
+	public static final long FULL_MODULUS = 1L << 32;
+
+	private static final SequenceSpace FULL = new SequenceSpace(FULL_MODULUS);
+
+	private final long modulus;
+
+	public SequenceSpace(long modulus) {
+		if ( modulus < 1 || modulus > FULL_MODULUS ) {
+			throw new IllegalArgumentException("Modulus must be from 1 to " + FULL_MODULUS + ": " + modulus);
+		}
+		this.modulus = modulus;
+	}
+
+	/** the 32-bit sequence space */
+	public static SequenceSpace full() {
+		return FULL;
+	}
+
+	/** the space of a modulus as written by getEncodedModulus(), 0 for the 32-bit space */
+	public static SequenceSpace of(int encodedModulus) {
+		return encodedModulus == 0 ? FULL : new SequenceSpace(Integer.toUnsignedLong(encodedModulus));
+	}
+
+	public long getModulus() {
+		return modulus;
+	}
+
+	/** the modulus as an int, 0 for the 32-bit space */
+	public int getEncodedModulus() {
+		return (int) modulus;
+	}
+
+	/** true if seqNum is a sequence number of this space, which every int is in the 32-bit space */
+	public boolean isValid(int seqNum) {
+		return modulus == FULL_MODULUS || (seqNum >= 0 && seqNum < modulus);
+	}
+
+	/** seqNum + n, wrapped around */
+	public int add(int seqNum, long n) {
+		return (int) Math.floorMod(Integer.toUnsignedLong(seqNum) + n, modulus);
+	}
+
+	public int next(int seqNum) {
+		return add(seqNum, 1);
+	}
+
+	public int previous(int seqNum) {
+		return add(seqNum, -1);
+	}
+
+	/** the last sequence number before the space wraps around to 0 */
+	public int last() {
+		return (int) (modulus - 1);
+	}
+
+	/** how far to is ahead of from, from 0 to modulus - 1 */
+	public long distance(int from, int to) {
+		return Math.floorMod(Integer.toUnsignedLong(to) - Integer.toUnsignedLong(from), modulus);
+	}
+
+	/** true if seqNum is one of the windowSize sequence numbers from base on */
+	public boolean isInWindow(int base, int seqNum, long windowSize) {
+		return isValid(seqNum) && distance(base, seqNum) < windowSize;
+	}
+
+	public String toString() {
+		return "mod " + modulus;
+	}
+}